@@ -0,0 +1,47 @@
+package main.java;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/**
+ * Settings from datasource.properties, shared by the panel and the
+ * headless reader. Kept apart from MainApp so that loading settings never
+ * pulls in JavaFX.
+ */
+public final class AppConfig {
+    private static final String PROPERTIES_FILE_PATH = "datasource.properties";
+
+    public static Properties properties = new Properties();
+
+    private AppConfig() {
+    }
+
+    /**
+     * Load datasource.properties from the classpath, then the file named by
+     * the "rfid.config" system property (if set) on top of it
+     */
+    public static void load() {
+        Properties loaded = new Properties();
+        try (InputStream inputStream = AppConfig.class.getClassLoader().getResourceAsStream(PROPERTIES_FILE_PATH)) {
+            if (inputStream != null) {
+                loaded.load(inputStream);
+            } else {
+                System.err.println("Settings file not found on classpath: " + PROPERTIES_FILE_PATH);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        String override = System.getProperty("rfid.config");
+        if (override != null) {
+            try (InputStream inputStream = new FileInputStream(override)) {
+                loaded.load(inputStream);
+            } catch (IOException e) {
+                System.err.println("Cannot read settings file " + override + ": " + e.getMessage());
+            }
+        }
+        properties = loaded;
+    }
+}
@@ -0,0 +1,94 @@
+package main.java;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The DB02UHF ASCII format: commands are "KEYWORD[:argument]" lines and
+ * every received line (or length-prefixed frame) is one reply or one tag
+ * report, told apart by SerialService from its contents.
+ */
+public class AsciiCodec implements ProtocolCodec {
+    private static final int MAX_FRAME_LENGTH = 256;
+
+    private final FrameDecoder decoder;
+    private final byte[] frameBuffer = new byte[MAX_FRAME_LENGTH];
+
+    public AsciiCodec(FrameDecoder decoder) {
+        this.decoder = decoder;
+    }
+
+    @Override
+    public String getName() {
+        return "ascii";
+    }
+
+    @Override
+    public int free() {
+        return decoder.free();
+    }
+
+    @Override
+    public void receive(byte[] data, int offset, int length) {
+        decoder.write(data, offset, length);
+    }
+
+    @Override
+    public boolean decodeNext(Listener listener) {
+        int len;
+        while ((len = decoder.nextFrame(frameBuffer)) >= 0) {
+            if (deliver(len, listener)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean flushPartial(Listener listener) {
+        int len = decoder.drainPartial(frameBuffer);
+        return len > 0 && deliver(len, listener);
+    }
+
+    /**
+     * @return false for blank, garbled and oversized frames, which are skipped
+     */
+    private boolean deliver(int len, Listener listener) {
+        // No reply or report comes near the buffer size; a frame that fills it was cut short
+        if (len == frameBuffer.length) {
+            listener.onDecodeError("frame longer than " + MAX_FRAME_LENGTH + " bytes");
+            return false;
+        }
+        // Replies and tag IDs are printable text; anything else is line noise, e.g. a baud rate mismatch
+        for (int i = 0; i < len; i++) {
+            int b = frameBuffer[i] & 0xFF;
+            if ((b < 0x20 && b != '\t' && b != '\r' && b != '\n') || b >= 0x7F) {
+                listener.onDecodeError("non-printable byte in frame");
+                return false;
+            }
+        }
+        String frame = new String(frameBuffer, 0, len).trim();
+        if (frame.isEmpty()) {
+            return false;
+        }
+        listener.onFrame(frame);
+        return true;
+    }
+
+    @Override
+    public void encodeCommand(String keyword, String argument, ByteBuffer dst) {
+        dst.clear();
+        putAscii(dst, keyword);
+        if (!argument.isEmpty()) {
+            dst.put((byte) ':');
+            putAscii(dst, argument);
+        }
+        dst.put((byte) '\r').put((byte) '\n');
+        dst.flip();
+    }
+
+    private static void putAscii(ByteBuffer dst, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            dst.put((byte) value.charAt(i));
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package main.java;
+
+/**
+ * What a tag is attached to, as recorded in the asset store
+ */
+public class Asset {
+    private final String tagId;
+    private final String sku;
+    private final String description;
+    private final String location;
+
+    public Asset(String tagId, String sku, String description, String location) {
+        this.tagId = tagId;
+        this.sku = sku;
+        this.description = description;
+        this.location = location;
+    }
+
+    public String getTagId() {
+        return tagId;
+    }
+
+    public String getSku() {
+        return sku;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    /**
+     * "SKU description @ location", leaving out empty fields
+     */
+    public String describe() {
+        StringBuilder text = new StringBuilder(sku);
+        if (!description.isEmpty()) {
+            text.append(text.length() > 0 ? " " : "").append(description);
+        }
+        if (!location.isEmpty()) {
+            text.append(text.length() > 0 ? " " : "").append("@ ").append(location);
+        }
+        return text.toString();
+    }
+
+    @Override
+    public String toString() {
+        return tagId + " " + describe();
+    }
+}
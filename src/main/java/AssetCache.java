@@ -0,0 +1,331 @@
+package main.java;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Resolves tag IDs to {@link Asset}s from an {@link AssetStore} through a
+ * bounded LRU cache, so a tag read over and over costs one map lookup.
+ *
+ * Entries expire after a TTL; tags the store doesn't know are cached too,
+ * for a shorter time, so unknown tags in the field don't hit the file on
+ * every read. Misses are loaded on one background thread, never on the
+ * caller's: {@link #lookup} returns a future that is already complete on
+ * a hit, and callers asking for a tag that is being loaded share its load.
+ * Hit rate and load statistics are published over JMX.
+ */
+public class AssetCache implements AssetCacheMBean {
+    private final AssetStore store;
+    private final int capacity;
+    private final long ttlMillis;
+    private final long negativeTtlMillis;
+    private final ScheduledExecutorService loader;
+
+    // Both guarded by this
+    private final LinkedHashMap<String, Cached> entries;
+    private final Map<String, CompletableFuture<Asset>> loading = new HashMap<>();
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private volatile String lastError;
+    private ObjectName objectName;
+
+    /**
+     * @param negativeTtlMillis how long a tag the store doesn't have stays cached as unknown
+     */
+    public AssetCache(AssetStore store, int capacity, long ttlMillis, long negativeTtlMillis) {
+        this.store = store;
+        this.capacity = capacity;
+        this.ttlMillis = ttlMillis;
+        this.negativeTtlMillis = negativeTtlMillis;
+        this.entries = new LinkedHashMap<String, Cached>(Math.min(capacity, 1 << 16), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+                if (size() > AssetCache.this.capacity) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.loader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rfid-asset-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        // Index the store up front, so the first detections don't wait for it
+        loader.execute(() -> {
+            try {
+                store.refresh();
+            } catch (IOException e) {
+                reportFailure(e);
+            }
+        });
+        long snapshotSeconds = Long.parseLong(AppConfig.properties.getProperty("metrics.snapshot.seconds", "60"));
+        if (snapshotSeconds > 0) {
+            loader.scheduleAtFixedRate(() -> System.out.println(snapshot()),
+                    snapshotSeconds, snapshotSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Cache over the CSV named by "assets.file", or null if none is configured
+     */
+    public static AssetCache fromProperties() {
+        String path = AppConfig.properties.getProperty("assets.file", "").trim();
+        if (path.isEmpty()) {
+            return null;
+        }
+        AssetCache cache = new AssetCache(new AssetStore(new File(path)),
+                Integer.parseInt(AppConfig.properties.getProperty("assets.cache.size", "10000")),
+                Long.parseLong(AppConfig.properties.getProperty("assets.cache.ttl.ms", "300000")),
+                Long.parseLong(AppConfig.properties.getProperty("assets.cache.negative.ttl.ms", "30000")));
+        if (Boolean.parseBoolean(AppConfig.properties.getProperty("metrics.jmx", "true"))) {
+            cache.register();
+        }
+        return cache;
+    }
+
+    /**
+     * The tag's asset, or null if the store has no such tag. Never blocks:
+     * on a hit the future is already complete, otherwise it completes once
+     * the loader thread has read the store, so don't wait on it from a
+     * thread that must stay responsive.
+     */
+    public CompletableFuture<Asset> lookup(String tagId) {
+        String key = tagId.trim().toUpperCase();
+        long now = System.currentTimeMillis();
+        lookups.increment();
+
+        CompletableFuture<Asset> future;
+        synchronized (this) {
+            Cached entry = entries.get(key);
+            if (entry != null && entry.expiresAt > now) {
+                (entry.future.getNow(null) == null ? negativeHits : hits).increment();
+                return entry.future;
+            }
+            if (entry != null) {
+                entries.remove(key);
+            }
+            misses.increment();
+            future = loading.get(key);
+            if (future != null) {
+                return future;
+            }
+            future = new CompletableFuture<>();
+            loading.put(key, future);
+        }
+
+        CompletableFuture<Asset> pending = future;
+        try {
+            loader.execute(() -> load(key, pending));
+        } catch (RejectedExecutionException e) {
+            // Closed
+            synchronized (this) {
+                loading.remove(key);
+            }
+            pending.complete(null);
+        }
+        return pending;
+    }
+
+    /**
+     * The cached asset, or null if the tag is unknown or not loaded yet (a
+     * load is started); for callers that can show the asset later or never
+     */
+    public Asset getIfPresent(String tagId) {
+        return lookup(tagId).getNow(null);
+    }
+
+    /**
+     * Drop all entries, e.g. after the asset file was edited
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    private void load(String key, CompletableFuture<Asset> future) {
+        long start = System.nanoTime();
+        Asset asset = null;
+        boolean loaded = false;
+        try {
+            asset = store.find(key);
+            loaded = true;
+            loads.increment();
+        } catch (IOException e) {
+            // Not cached: the next read of the tag tries again
+            loadFailures.increment();
+            reportFailure(e);
+        }
+        loadNanos.add(System.nanoTime() - start);
+
+        synchronized (this) {
+            loading.remove(key);
+            if (loaded) {
+                long ttl = asset != null ? ttlMillis : negativeTtlMillis;
+                entries.put(key, new Cached(CompletableFuture.completedFuture(asset), System.currentTimeMillis() + ttl));
+            }
+        }
+        future.complete(asset);
+    }
+
+    /**
+     * One line per distinct error, not one per failed lookup
+     */
+    private void reportFailure(IOException e) {
+        String message = e.getMessage();
+        if (message != null && !message.equals(lastError)) {
+            System.err.println("Asset store " + store.getFile() + " unreadable: " + message);
+        }
+        lastError = message;
+    }
+
+    @Override
+    public long getLookups() {
+        return lookups.sum();
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getNegativeHits() {
+        return negativeHits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public double getHitRate() {
+        long total = lookups.sum();
+        return total == 0 ? 0.0 : (double) (hits.sum() + negativeHits.sum()) / total;
+    }
+
+    @Override
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    @Override
+    public long getLoadFailures() {
+        return loadFailures.sum();
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public double getLoadLatencyMeanMillis() {
+        long count = loads.sum() + loadFailures.sum();
+        return count == 0 ? 0.0 : loadNanos.sum() / 1e6 / count;
+    }
+
+    @Override
+    public void resetStatistics() {
+        lookups.reset();
+        hits.reset();
+        negativeHits.reset();
+        misses.reset();
+        loads.reset();
+        loadFailures.reset();
+        loadNanos.reset();
+        evictions.reset();
+    }
+
+    /**
+     * One-line summary for the log
+     */
+    public String snapshot() {
+        return String.format("Assets: lookups=%d hit rate=%.1f%% (hits=%d unknown=%d misses=%d) loads=%d failed=%d "
+                        + "load mean=%.2fms size=%d/%d evictions=%d",
+                getLookups(), getHitRate() * 100, getHits(), getNegativeHits(), getMisses(), getLoads(),
+                getLoadFailures(), getLoadLatencyMeanMillis(), getSize(), capacity, getEvictions());
+    }
+
+    public synchronized void register() {
+        if (objectName != null) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName("main.java:type=AssetCache");
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+            objectName = name;
+        } catch (Exception e) {
+            System.err.println("Failed to register asset cache MBean: " + e.getMessage());
+        }
+    }
+
+    public void close() {
+        loader.shutdownNow();
+        List<CompletableFuture<Asset>> pending;
+        synchronized (this) {
+            pending = new ArrayList<>(loading.values());
+            loading.clear();
+            if (objectName != null) {
+                try {
+                    ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+                } catch (Exception e) {
+                    System.err.println("Failed to unregister asset cache MBean: " + e.getMessage());
+                }
+                objectName = null;
+            }
+        }
+        // Nobody waits forever on a load that will never run
+        for (CompletableFuture<Asset> future : pending) {
+            future.complete(null);
+        }
+    }
+
+    private static final class Cached {
+        final CompletableFuture<Asset> future;
+        final long expiresAt;
+
+        Cached(CompletableFuture<Asset> future, long expiresAt) {
+            this.future = future;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package main.java;
+
+/**
+ * JMX view of the {@link AssetCache}
+ */
+public interface AssetCacheMBean {
+
+    long getLookups();
+
+    long getHits();
+
+    /**
+     * Hits on tags known not to be in the store
+     */
+    long getNegativeHits();
+
+    long getMisses();
+
+    /**
+     * Hits (negative hits included) per lookup, 0..1
+     */
+    double getHitRate();
+
+    long getLoads();
+
+    long getLoadFailures();
+
+    long getEvictions();
+
+    int getSize();
+
+    int getCapacity();
+
+    double getLoadLatencyMeanMillis();
+
+    void resetStatistics();
+}
@@ -0,0 +1,245 @@
+package main.java;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Asset metadata in a local CSV file, one tag per line:
+ *
+ *   tag_id,sku,description,location
+ *
+ * The header line names the columns (any order; "tag", "tag_id", "epc" or
+ * "id" for the tag); without one the order above is assumed. Fields may be
+ * quoted, with "" for a quote inside. Tag IDs are matched case-insensitively.
+ *
+ * Only an index from tag ID to line offset is kept in memory; a lookup
+ * reads its one line from the file with a positional read, so the store
+ * can be larger than the heap would like and is safe to read from several
+ * threads. The index is rebuilt when the file's size or modification time
+ * changes.
+ */
+public class AssetStore {
+    private static final int MAX_LINE_LENGTH = 4096;
+
+    private final File file;
+    private Map<String, Long> offsets = new HashMap<>();
+    private int tagColumn = 0;
+    private int skuColumn = 1;
+    private int descriptionColumn = 2;
+    private int locationColumn = 3;
+    private long indexedLength = -1;
+    private long indexedModified = -1;
+
+    public AssetStore(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the tag's asset, or null if the store has no line for it
+     */
+    public Asset find(String tagId) throws IOException {
+        String key = tagId.trim().toUpperCase();
+        Long offset;
+        int[] columns;
+        synchronized (this) {
+            refresh();
+            offset = offsets.get(key);
+            columns = new int[] { tagColumn, skuColumn, descriptionColumn, locationColumn };
+        }
+        if (offset == null) {
+            return null;
+        }
+
+        List<String> fields;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            fields = parse(readLine(channel, offset));
+        }
+        if (!key.equals(field(fields, columns[0]).toUpperCase())) {
+            // The file changed under the index; rebuild it on the next lookup
+            synchronized (this) {
+                indexedLength = -1;
+            }
+            return null;
+        }
+        return new Asset(key, field(fields, columns[1]), field(fields, columns[2]), field(fields, columns[3]));
+    }
+
+    /**
+     * Rebuild the index if the file changed since it was last read
+     */
+    public synchronized void refresh() throws IOException {
+        if (file.length() != indexedLength || file.lastModified() != indexedModified) {
+            index();
+        }
+    }
+
+    /**
+     * Number of tags in the store, as of the last index
+     */
+    public synchronized int size() {
+        return offsets.size();
+    }
+
+    /**
+     * One pass over the file, noting where each tag's line starts
+     */
+    private void index() throws IOException {
+        Map<String, Long> index = new HashMap<>();
+        long length = file.length();
+        long modified = file.lastModified();
+        tagColumn = 0;
+        skuColumn = 1;
+        descriptionColumn = 2;
+        locationColumn = 3;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            byte[] line = new byte[MAX_LINE_LENGTH];
+            int lineLength = 0;
+            long lineStart = 0;
+            long position = 0;
+            boolean first = true;
+
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    byte b = buffer.get();
+                    position++;
+                    if (b != '\n') {
+                        if (lineLength < line.length) {
+                            line[lineLength++] = b;
+                        }
+                        continue;
+                    }
+                    first = indexLine(line, lineLength, lineStart, first, index);
+                    lineLength = 0;
+                    lineStart = position;
+                }
+                buffer.clear();
+            }
+            if (lineLength > 0) {
+                indexLine(line, lineLength, lineStart, first, index);
+            }
+        }
+
+        offsets = index;
+        indexedLength = length;
+        indexedModified = modified;
+        System.out.println("Asset store " + file + " indexed: " + index.size() + " tags");
+    }
+
+    /**
+     * @return whether the header may still be ahead
+     */
+    private boolean indexLine(byte[] line, int length, long offset, boolean first, Map<String, Long> index) {
+        String text = new String(line, 0, length, StandardCharsets.UTF_8).trim();
+        if (text.isEmpty() || text.startsWith("#")) {
+            return first;
+        }
+        List<String> fields = parse(text);
+        if (first && readHeader(fields)) {
+            return false;
+        }
+        String tagId = field(fields, tagColumn).toUpperCase();
+        if (!tagId.isEmpty()) {
+            index.put(tagId, offset);
+        }
+        return false;
+    }
+
+    private boolean readHeader(List<String> fields) {
+        int tag = -1;
+        int sku = -1;
+        int description = -1;
+        int location = -1;
+        for (int i = 0; i < fields.size(); i++) {
+            switch (fields.get(i).trim().toLowerCase()) {
+                case "tag":
+                case "tag_id":
+                case "tagid":
+                case "epc":
+                case "id":
+                    tag = i;
+                    break;
+                case "sku":
+                    sku = i;
+                    break;
+                case "description":
+                case "name":
+                    description = i;
+                    break;
+                case "location":
+                    location = i;
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (tag < 0) {
+            return false;
+        }
+        tagColumn = tag;
+        skuColumn = sku;
+        descriptionColumn = description;
+        locationColumn = location;
+        return true;
+    }
+
+    private static String readLine(FileChannel channel, long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_LINE_LENGTH);
+        channel.read(buffer, offset);
+        byte[] bytes = buffer.array();
+        int end = 0;
+        while (end < buffer.position() && bytes[end] != '\n') {
+            end++;
+        }
+        return new String(bytes, 0, end, StandardCharsets.UTF_8).trim();
+    }
+
+    private static String field(List<String> fields, int column) {
+        return column >= 0 && column < fields.size() ? fields.get(column).trim() : "";
+    }
+
+    /**
+     * Split one CSV line, honouring quoted fields
+     */
+    static List<String> parse(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
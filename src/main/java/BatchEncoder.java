@@ -0,0 +1,233 @@
+package main.java;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Commissions a batch of tags from a CSV of IDs (first column, one per line).
+ *
+ * For each ID the encoder waits for a blank tag to enter the field (any tag
+ * whose ID is not part of the batch), writes and verifies it with up to
+ * "rfid.retry.attempts" attempts, and appends the outcome to a progress file
+ * next to the CSV. Re-running the same CSV resumes after the last written
+ * ID; failed IDs are retried.
+ */
+public class BatchEncoder {
+    private static final String PROGRESS_SUFFIX = ".progress";
+    private static final String WRITTEN = "WRITTEN";
+    private static final String FAILED = "FAILED";
+
+    private final SerialService serialService;
+    private final File csvFile;
+    private final File progressFile;
+    private final int retryAttempts;
+    private final Consumer<String> log;
+    private final BlockingQueue<String> blankTags = new LinkedBlockingQueue<>();
+    private volatile boolean cancelled = false;
+
+    public BatchEncoder(SerialService serialService, File csvFile, Consumer<String> log) {
+        this.serialService = serialService;
+        this.csvFile = csvFile;
+        this.progressFile = new File(csvFile.getPath() + PROGRESS_SUFFIX);
+        this.retryAttempts = Math.max(1,
+                Integer.parseInt(AppConfig.properties.getProperty("rfid.retry.attempts", "3")));
+        this.log = log;
+    }
+
+    /**
+     * Encode every ID not yet written. Blocks until the batch is done or
+     * cancelled; auto-detection must be running on the reader.
+     */
+    public Result run() throws IOException {
+        List<String> ids = readIds(csvFile);
+        Set<String> batchIds = new HashSet<>(ids);
+        Set<String> done = readWrittenIds(progressFile);
+        Result result = new Result(ids.size(), done.size());
+
+        Consumer<TagEvent> listener = event -> {
+            // Tags already carrying a batch ID are finished, not blank
+            if (event.getType() == TagEvent.Type.ENTER && !batchIds.contains(event.getTagId())) {
+                blankTags.offer(event.getTagId());
+            } else if (event.getType() == TagEvent.Type.EXIT) {
+                // Gone from the field, so not a tag to write any more
+                blankTags.remove(event.getTagId());
+            }
+        };
+        serialService.addTagEventListener(listener);
+
+        long started = System.nanoTime();
+        try (BufferedWriter progress = new BufferedWriter(new FileWriter(progressFile, true))) {
+            if (!done.isEmpty()) {
+                log.accept("BATCH: resuming, " + done.size() + " of " + ids.size() + " already written");
+            }
+
+            for (int i = 0; i < ids.size() && !cancelled; i++) {
+                String id = ids.get(i);
+                if (done.contains(id)) {
+                    continue;
+                }
+
+                String blank = nextBlankTag();
+                if (blank == null) {
+                    break; // cancelled while waiting
+                }
+
+                String outcome = encode(blank, id);
+                progress.write((i + 1) + "," + id + "," + outcome);
+                progress.newLine();
+                progress.flush();
+
+                if (WRITTEN.equals(outcome)) {
+                    result.written++;
+                    log.accept("BATCH " + (i + 1) + "/" + ids.size() + ": " + blank + " -> " + id);
+                } else {
+                    result.failures.add(id);
+                    log.accept("BATCH " + (i + 1) + "/" + ids.size() + ": FAILED " + id);
+                    // Still blank and in the field, where it won't enter again: keep it for the next ID
+                    if (serialService.getInventory().contains(blank)) {
+                        blankTags.offer(blank);
+                    }
+                }
+            }
+        } finally {
+            serialService.removeTagEventListener(listener);
+            result.elapsedNanos = System.nanoTime() - started;
+            result.cancelled = cancelled;
+        }
+        return result;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * The next blank tag still in the field; the write goes to whatever tag
+     * the reader addresses, so one that has left would desync the progress file
+     */
+    private String nextBlankTag() {
+        try {
+            while (!cancelled) {
+                String tag = blankTags.poll(200, TimeUnit.MILLISECONDS);
+                if (tag != null && serialService.getInventory().contains(tag)) {
+                    return tag;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelled = true;
+        }
+        return null;
+    }
+
+    private String encode(String blank, String id) {
+        for (int attempt = 1; attempt <= retryAttempts && !cancelled; attempt++) {
+            try {
+                if (serialService.writeTagAsync(id).get()) {
+                    return WRITTEN;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancelled = true;
+            } catch (ExecutionException e) {
+                // counts as a failed attempt
+            }
+            log.accept("BATCH: write of " + id + " to " + blank + " failed (attempt " + attempt + ")");
+        }
+        return FAILED;
+    }
+
+    private static List<String> readIds(File csv) throws IOException {
+        List<String> ids = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(csv))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String id = line.split(",", 2)[0].trim().toUpperCase();
+                if (id.isEmpty() || id.startsWith("#") || (ids.isEmpty() && id.equals("ID"))) {
+                    continue;
+                }
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    private static Set<String> readWrittenIds(File progress) throws IOException {
+        Set<String> written = new HashSet<>();
+        if (!progress.exists()) {
+            return written;
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(progress))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(",");
+                if (fields.length == 3 && WRITTEN.equals(fields[2])) {
+                    written.add(fields[1]);
+                }
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Outcome of one run over the batch
+     */
+    public static class Result {
+        private final int total;
+        private final int previouslyWritten;
+        private int written;
+        private final List<String> failures = new ArrayList<>();
+        private long elapsedNanos;
+        private boolean cancelled;
+
+        Result(int total, int previouslyWritten) {
+            this.total = total;
+            this.previouslyWritten = previouslyWritten;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+
+        public int getWritten() {
+            return written;
+        }
+
+        public int getRemaining() {
+            return total - previouslyWritten - written;
+        }
+
+        public List<String> getFailures() {
+            return failures;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public double getTagsPerMinute() {
+            double minutes = elapsedNanos / 60e9;
+            return minutes > 0 ? written / minutes : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d written, %d failed, %d remaining of %d (%.1f tags/min)%s",
+                    written, failures.size(), getRemaining(), total, getTagsPerMinute(),
+                    cancelled ? " - cancelled" : "");
+        }
+    }
+}
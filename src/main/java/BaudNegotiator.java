@@ -0,0 +1,292 @@
+package main.java;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Moves a reader and its port to the fastest line speed that holds up.
+ *
+ * negotiate() first finds the rate the reader is at by probing STATUS at
+ * the port's rate and then at each candidate, and then steps the reader up
+ * with SET_BAUD, keeping a rate only if a few STATUS probes get through
+ * cleanly. While monitoring, a burst of decode errors or command timeouts
+ * marks the current rate as unstable and falls back to the next slower one.
+ * Rates found unstable are not tried again; rates that verified cleanly
+ * once are only probed when negotiating again after a reconnect.
+ */
+public class BaudNegotiator {
+    private static final String DEFAULT_CANDIDATES = "921600,460800,230400,115200,57600,38400,19200,9600";
+    private static final int VERIFY_PROBES = 3;
+    private static final long SETTLE_MILLIS = 50;
+
+    // One thread watches the links of all readers
+    private static final ScheduledExecutorService MONITOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "rfid-baud-monitor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final SerialService reader;
+    private final List<Integer> candidates;
+    private final long probeTimeoutMillis;
+    private final long errorBurst;
+    private final long checkMillis;
+    private final Set<Integer> unstable = Collections.synchronizedSet(new HashSet<>());
+    // Rates that passed a full verification; after a reconnect one probe is enough
+    private final Set<Integer> verified = Collections.synchronizedSet(new HashSet<>());
+    private ScheduledFuture<?> monitor;
+    private long lastErrors;
+    // Where the reader was first found, most likely its power-on rate
+    private volatile int homeRate;
+
+    /**
+     * @param candidates rates to consider, fastest first
+     * @param errorBurst decode errors plus timeouts within one check that count as a failing link
+     */
+    public BaudNegotiator(SerialService reader, List<Integer> candidates, long probeTimeoutMillis,
+                          long errorBurst, long checkMillis) {
+        this.reader = reader;
+        this.candidates = new ArrayList<>(candidates);
+        this.candidates.sort(Collections.reverseOrder());
+        this.probeTimeoutMillis = probeTimeoutMillis;
+        this.errorBurst = errorBurst;
+        this.checkMillis = checkMillis;
+    }
+
+    /**
+     * Negotiator configured from the serial.baudrate.* properties, or null
+     * if "serial.baudrate.auto" is off
+     */
+    public static BaudNegotiator fromProperties(SerialService reader) {
+        if (!Boolean.parseBoolean(AppConfig.properties.getProperty("serial.baudrate.auto", "false"))) {
+            return null;
+        }
+        List<Integer> candidates = new ArrayList<>();
+        for (String rate : AppConfig.properties.getProperty("serial.baudrate.candidates", DEFAULT_CANDIDATES).split(",")) {
+            if (!rate.trim().isEmpty()) {
+                candidates.add(Integer.parseInt(rate.trim()));
+            }
+        }
+        return new BaudNegotiator(reader, candidates,
+                Long.parseLong(AppConfig.properties.getProperty("serial.baudrate.probe.ms", "300")),
+                Long.parseLong(AppConfig.properties.getProperty("serial.baudrate.error.burst", "20")),
+                Long.parseLong(AppConfig.properties.getProperty("serial.baudrate.check.ms", "1000")));
+    }
+
+    /**
+     * Find the reader and bring it up to the fastest stable candidate rate.
+     * Blocks while probing; call it off the UI thread.
+     * @return the rate in effect, or -1 if the reader answered at no rate
+     */
+    public int negotiate() {
+        int current = findReader();
+        if (current < 0) {
+            System.err.println("Reader on " + reader.getPortName() + " did not answer at any baud rate");
+            return -1;
+        }
+        for (int rate : candidates) {
+            if (rate <= current) {
+                break;
+            }
+            if (!unstable.contains(rate) && switchTo(current, rate)) {
+                current = rate;
+                break;
+            }
+        }
+        System.out.println("Reader on " + reader.getPortName() + " running at " + current + " baud");
+        return current;
+    }
+
+    /**
+     * Watch the link and fall back to a slower rate on error bursts
+     */
+    public synchronized void startMonitoring() {
+        if (monitor != null || checkMillis <= 0) {
+            return;
+        }
+        lastErrors = errorCount();
+        monitor = MONITOR.scheduleWithFixedDelay(this::checkLink, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopMonitoring() {
+        if (monitor != null) {
+            monitor.cancel(false);
+            monitor = null;
+        }
+    }
+
+    private void checkLink() {
+        if (!reader.isConnected()) {
+            return;
+        }
+        long errors = errorCount();
+        long burst = errors - lastErrors;
+        lastErrors = errors;
+        if (burst < errorBurst) {
+            return;
+        }
+
+        int current = reader.getBaudRate();
+        unstable.add(current);
+        System.err.println(burst + " line errors on " + reader.getPortName() + " at " + current
+                + " baud, falling back");
+        for (int rate : candidates) {
+            if (rate < current && !unstable.contains(rate) && switchTo(current, rate)) {
+                System.out.println("Reader on " + reader.getPortName() + " fell back to " + rate + " baud");
+                break;
+            }
+        }
+        // Errors from the switch itself don't count against the new rate
+        lastErrors = errorCount();
+    }
+
+    private long errorCount() {
+        ReaderMetrics metrics = reader.getMetrics();
+        return metrics.getDecodeErrors() + metrics.getCommandTimeouts();
+    }
+
+    /**
+     * Probe the port's current rate first, then the rate the reader was first
+     * found at (where a power-cycled reader comes back), then every candidate
+     * @return the rate the reader answered at, or -1
+     */
+    private int findReader() {
+        int configured = reader.getBaudRate();
+        List<Integer> rates = new ArrayList<>();
+        rates.add(configured);
+        rates.add(homeRate);
+        rates.addAll(candidates);
+
+        Set<Integer> tried = new HashSet<>();
+        for (int rate : rates) {
+            if (Thread.currentThread().isInterrupted()) {
+                return -1;
+            }
+            if (rate <= 0 || !tried.add(rate)) {
+                continue;
+            }
+            if ((rate == reader.getBaudRate() || reader.setPortBaudRate(rate)) && probe(1)) {
+                if (homeRate == 0) {
+                    homeRate = rate;
+                }
+                return rate;
+            }
+        }
+        if (configured > 0) {
+            reader.setPortBaudRate(configured);
+        }
+        return -1;
+    }
+
+    /**
+     * Move reader and port from one rate to another, and back if the new rate doesn't hold up
+     */
+    private boolean switchTo(int from, int to) {
+        boolean switched;
+        try {
+            switched = reader.changeBaudRate(to).get(probeTimeoutMillis * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            // The reader may have switched even though its OK was lost
+            reader.setPortBaudRate(to);
+            switched = probe();
+            if (!switched) {
+                reader.setPortBaudRate(from);
+                if (!probe()) {
+                    findReader();
+                }
+                return false;
+            }
+        }
+        if (!switched) {
+            unstable.add(to); // refused
+            return false;
+        }
+        if (verified.contains(to) ? probe() : verify()) {
+            verified.add(to);
+            return true;
+        }
+
+        unstable.add(to);
+        try {
+            if (reader.changeBaudRate(from).get(probeTimeoutMillis * 2, TimeUnit.MILLISECONDS) && probe()) {
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            // fall through and look for the reader
+        }
+        reader.setPortBaudRate(from);
+        if (!probe()) {
+            findReader();
+        }
+        return false;
+    }
+
+    /**
+     * Clean STATUS round trips spread over one check interval, with no line
+     * errors in between; a quick look would miss a line that is only noisy
+     */
+    private boolean verify() {
+        long spacing = Math.max(SETTLE_MILLIS, checkMillis / VERIFY_PROBES);
+        try {
+            // Bytes already on the line during the switch arrive garbled; don't count them
+            Thread.sleep(SETTLE_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        long before = errorCount();
+        for (int i = 0; i < VERIFY_PROBES; i++) {
+            try {
+                Thread.sleep(spacing);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            if (!probe(2)) {
+                return false;
+            }
+        }
+        return errorCount() - before == 0;
+    }
+
+    private boolean probe() {
+        return probe(2);
+    }
+
+    /**
+     * @return true if the reader answers STATUS at the port's current rate
+     */
+    private boolean probe(int attempts) {
+        for (int attempt = 0; attempt < attempts; attempt++) {
+            try {
+                Response response = reader.sendCommandAsync("STATUS", probeTimeoutMillis,
+                        IoScheduler.Priority.STATUS).get();
+                // Printable noise can pass for a reply; a real status always says OK
+                if (!response.isError() && response.getBody().contains("OK")) {
+                    return true;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                // no answer at this rate (yet)
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,273 @@
+package main.java;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Binary framing for readers in binary mode:
+ *
+ *   SOF(0xA5) LEN(2) CMD(1) DATA(LEN-1) CRC(2)
+ *
+ * LEN and CRC are big-endian; the CRC is CRC-16/CCITT-FALSE over LEN, CMD
+ * and DATA. Replies carry the command code with the high bit set and a
+ * status byte (0 = OK) first in DATA. Inventory reports (CMD 0x40) carry a
+ * tag count followed by [RSSI][EPC length][EPC] per tag, so one frame can
+ * report many tags; EPCs are rendered as upper-case hex.
+ *
+ * Received bytes are kept in one heap buffer that is compacted only when
+ * it runs out of room, and frames are parsed in place. After a bad length
+ * or CRC the decoder resynchronises on the next start byte.
+ */
+public class BinaryCodec implements ProtocolCodec {
+    public static final int SOF = 0xA5;
+    public static final int CMD_STATUS = 0x01;
+    public static final int CMD_SET_POWER = 0x10;
+    public static final int CMD_SET_REGION = 0x11;
+    public static final int CMD_SET_MODE = 0x12;
+    public static final int CMD_SET_BAUD = 0x13;
+    public static final int CMD_WRITE = 0x20;
+    public static final int CMD_INVENTORY = 0x40;
+    public static final int REPLY = 0x80;
+
+    public static final int STATUS_OK = 0x00;
+    public static final int STATUS_UNKNOWN_COMMAND = 0x01;
+    public static final int STATUS_BAD_ARGUMENT = 0x02;
+    public static final int STATUS_NO_TAG = 0x03;
+    public static final int STATUS_WRITE_FAILED = 0x04;
+
+    // SOF + LEN + CMD + CRC
+    public static final int OVERHEAD = 6;
+
+    private static final String[] COMMAND_NAMES = new String[REPLY];
+    private static final Map<String, Integer> COMMAND_CODES = new HashMap<>();
+    private static final String[] STATUS_NAMES = {
+            "OK", "UNKNOWN_COMMAND", "BAD_ARGUMENT", "NO_TAG", "WRITE_FAILED"
+    };
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    static {
+        command(CMD_STATUS, "STATUS");
+        command(CMD_SET_POWER, "SET_POWER");
+        command(CMD_SET_REGION, "SET_REGION");
+        command(CMD_SET_MODE, "SET_MODE");
+        command(CMD_SET_BAUD, "SET_BAUD");
+        command(CMD_WRITE, "WRITE");
+    }
+
+    private static void command(int code, String keyword) {
+        COMMAND_NAMES[code] = keyword;
+        COMMAND_CODES.put(keyword, code);
+    }
+
+    private final ByteBuffer in;
+    private final int maxPayload;
+    private final char[] hex = new char[512];
+
+    /**
+     * @param bufferSize receive buffer size; also bounds the largest frame accepted
+     */
+    public BinaryCodec(int bufferSize) {
+        in = ByteBuffer.allocate(bufferSize);
+        in.flip(); // kept in read mode: position..limit is unconsumed data
+        maxPayload = bufferSize - OVERHEAD + 1;
+    }
+
+    @Override
+    public String getName() {
+        return "binary";
+    }
+
+    @Override
+    public int free() {
+        return in.capacity() - in.remaining();
+    }
+
+    @Override
+    public void receive(byte[] data, int offset, int length) {
+        if (in.capacity() - in.limit() < length) {
+            in.compact();
+            in.flip();
+        }
+        int end = in.limit();
+        int n = Math.min(length, in.capacity() - end);
+        System.arraycopy(data, offset, in.array(), end, n);
+        in.limit(end + n);
+    }
+
+    @Override
+    public boolean decodeNext(Listener listener) {
+        byte[] buf = in.array();
+        while (true) {
+            int skipped = 0;
+            while (in.hasRemaining() && (buf[in.position()] & 0xFF) != SOF) {
+                in.position(in.position() + 1);
+                skipped++;
+            }
+            if (skipped > 0) {
+                listener.onDecodeError("skipped " + skipped + " bytes before start of frame");
+            }
+            if (in.remaining() < OVERHEAD) {
+                return false;
+            }
+
+            int start = in.position();
+            int length = in.getShort(start + 1) & 0xFFFF;
+            if (length == 0 || length > maxPayload) {
+                listener.onDecodeError("bad frame length " + length);
+                in.position(start + 1);
+                continue;
+            }
+            int end = start + 3 + length;
+            if (in.limit() < end + 2) {
+                return false; // wait for the rest of the frame
+            }
+            if (Crc16.update(Crc16.INITIAL, buf, start + 1, length + 2) != (in.getShort(end) & 0xFFFF)) {
+                listener.onDecodeError("CRC mismatch");
+                in.position(start + 1);
+                continue;
+            }
+
+            // Consume before dispatching, so a failing listener can't make us loop on the frame
+            in.position(end + 2);
+            dispatch(buf[start + 3] & 0xFF, buf, start + 4, length - 1, listener);
+            return true;
+        }
+    }
+
+    @Override
+    public boolean flushPartial(Listener listener) {
+        // A binary frame is never complete without its CRC; whatever is left is lost
+        if (!in.hasRemaining()) {
+            return false;
+        }
+        listener.onDecodeError("incomplete frame of " + in.remaining() + " bytes");
+        in.position(in.limit());
+        return false;
+    }
+
+    private void dispatch(int cmd, byte[] buf, int offset, int length, Listener listener) {
+        if (cmd == CMD_INVENTORY) {
+            decodeInventory(buf, offset, length, listener);
+            return;
+        }
+        String keyword = (cmd & REPLY) != 0 ? COMMAND_NAMES[cmd & ~REPLY] : null;
+        if (keyword == null || length < 1) {
+            listener.onDecodeError(String.format("unexpected frame 0x%02X", cmd));
+            return;
+        }
+        int status = buf[offset] & 0xFF;
+        String body;
+        if (status != STATUS_OK) {
+            body = "ERR:" + (status < STATUS_NAMES.length ? STATUS_NAMES[status] : String.format("0x%02X", status));
+        } else if (length > 1) {
+            body = "OK " + new String(buf, offset + 1, length - 1, StandardCharsets.US_ASCII);
+        } else {
+            body = "OK";
+        }
+        listener.onReply(keyword, body);
+    }
+
+    /**
+     * All tags of a report in one pass over the frame
+     */
+    private void decodeInventory(byte[] buf, int offset, int length, Listener listener) {
+        int end = offset + length;
+        int count = length > 0 ? buf[offset] & 0xFF : 0;
+        int p = offset + 1;
+        for (int i = 0; i < count; i++) {
+            if (p + 2 > end) {
+                listener.onDecodeError("inventory report cut short");
+                return;
+            }
+            int epcLength = buf[p + 1] & 0xFF; // buf[p] is the RSSI, not used yet
+            p += 2;
+            if (p + epcLength > end || epcLength * 2 > hex.length) {
+                listener.onDecodeError("inventory report cut short");
+                return;
+            }
+            for (int j = 0; j < epcLength; j++) {
+                int b = buf[p + j] & 0xFF;
+                hex[2 * j] = HEX[b >>> 4];
+                hex[2 * j + 1] = HEX[b & 0x0F];
+            }
+            p += epcLength;
+            listener.onTag(new String(hex, 0, 2 * epcLength));
+        }
+    }
+
+    @Override
+    public void encodeCommand(String keyword, String argument, ByteBuffer dst) {
+        Integer code = COMMAND_CODES.get(keyword);
+        if (code == null) {
+            throw new IllegalArgumentException("No binary command for " + keyword);
+        }
+        dst.clear();
+        dst.put((byte) SOF).putShort((short) 0).put(code.byteValue());
+        switch (code) {
+            case CMD_SET_POWER:
+                // NumberFormatException is an IllegalArgumentException too
+                dst.put((byte) Integer.parseInt(argument.trim()));
+                break;
+            case CMD_SET_REGION:
+                for (int i = 0; i < argument.length(); i++) {
+                    dst.put((byte) argument.charAt(i));
+                }
+                break;
+            case CMD_SET_MODE:
+                dst.put((byte) ("CONTINUOUS".equalsIgnoreCase(argument.trim()) ? 1 : 0));
+                break;
+            case CMD_SET_BAUD:
+                dst.putInt(Integer.parseInt(argument.trim()));
+                break;
+            case CMD_WRITE:
+                putHex(dst, argument.trim());
+                break;
+            default:
+                break;
+        }
+        dst.putShort(1, (short) (dst.position() - 3));
+        dst.putShort((short) Crc16.of(dst, 1, dst.position()));
+        dst.flip();
+    }
+
+    /**
+     * Tag IDs go over the wire as EPC bytes, so only even-length hex IDs can be written
+     */
+    private static void putHex(ByteBuffer dst, String id) {
+        if (id.isEmpty() || id.length() % 2 != 0) {
+            throw new IllegalArgumentException("Tag ID must be an even number of hex digits: " + id);
+        }
+        for (int i = 0; i < id.length(); i += 2) {
+            int high = Character.digit(id.charAt(i), 16);
+            int low = Character.digit(id.charAt(i + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Tag ID is not hex: " + id);
+            }
+            dst.put((byte) (high << 4 | low));
+        }
+    }
+
+    /**
+     * @return the command's code, or -1 if the binary protocol has no such command
+     */
+    public static int commandCode(String keyword) {
+        Integer code = COMMAND_CODES.get(keyword);
+        return code == null ? -1 : code;
+    }
+
+    public static String commandName(int code) {
+        return code >= 0 && code < COMMAND_NAMES.length ? COMMAND_NAMES[code] : null;
+    }
+
+    /**
+     * A complete frame around the given payload, for emulators and tests
+     */
+    public static byte[] frame(int cmd, byte[] data, int offset, int length) {
+        ByteBuffer frame = ByteBuffer.allocate(length + OVERHEAD);
+        frame.put((byte) SOF).putShort((short) (length + 1)).put((byte) cmd).put(data, offset, length);
+        frame.putShort((short) Crc16.of(frame, 1, frame.position()));
+        return frame.array();
+    }
+}
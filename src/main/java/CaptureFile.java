@@ -0,0 +1,233 @@
+package main.java;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * File format for raw serial captures: a header (magic, version, start
+ * time, port name) followed by one record per read or write, each holding
+ * the nanoseconds since the previous record, the direction, and the bytes.
+ * Times and lengths are variable-length integers, so a typical tag frame
+ * costs about three bytes of overhead.
+ */
+public final class CaptureFile {
+    public static final int READ = 0;
+    public static final int WRITE = 1;
+
+    private static final int MAGIC = 0x52464350; // "RFCP"
+    private static final int VERSION = 1;
+
+    private CaptureFile() {
+    }
+
+    /**
+     * Appends records; safe to call from any thread. Buffered records reach
+     * the file within about a second, even if the line then goes quiet.
+     */
+    public static final class Writer implements Closeable {
+        private static final long FLUSH_INTERVAL_MS = 1000;
+        // One timer flushes every open capture
+        private static final ScheduledExecutorService FLUSHER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rfid-capture-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        private final DataOutputStream out;
+        private final ScheduledFuture<?> flushTask;
+        private long lastNanos;
+        private boolean dirty;
+        private boolean closed;
+
+        public Writer(File file, String portName) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeUTF(portName);
+            lastNanos = System.nanoTime();
+            flushTask = FLUSHER.scheduleWithFixedDelay(this::flushIfDirty,
+                    FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+
+        public synchronized void record(int direction, byte[] data, int offset, int length) throws IOException {
+            long now = System.nanoTime();
+            writeVarLong(now - lastNanos);
+            writeVarLong(((long) length << 1) | direction);
+            out.write(data, offset, length);
+            lastNanos = now;
+            dirty = true;
+        }
+
+        /**
+         * Keep at most about a second of traffic in memory in case the process dies
+         */
+        private synchronized void flushIfDirty() {
+            if (!dirty || closed) {
+                return;
+            }
+            try {
+                out.flush();
+                dirty = false;
+            } catch (IOException e) {
+                System.err.println("Error flushing serial capture: " + e.getMessage());
+            }
+        }
+
+        private void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            flushTask.cancel(false);
+            out.close();
+        }
+    }
+
+    /**
+     * Reads records in order; next() reuses the data buffer
+     */
+    public static final class Reader implements Closeable {
+        private final DataInputStream in;
+        private final long startMillis;
+        private final String portName;
+        private byte[] data = new byte[256];
+        private int length;
+        private int direction;
+        private long nanos;
+
+        public Reader(File file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+            if (in.readInt() != MAGIC) {
+                in.close();
+                throw new IOException("Not a serial capture: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                in.close();
+                throw new IOException("Unsupported capture version " + version + ": " + file);
+            }
+            startMillis = in.readLong();
+            portName = in.readUTF();
+        }
+
+        /**
+         * @return false at the end of the capture (a record cut short by a crash counts as the end)
+         */
+        public boolean next() throws IOException {
+            try {
+                long delta = readVarLong();
+                long header = readVarLong();
+                direction = (int) (header & 1);
+                length = (int) (header >>> 1);
+                if (length > data.length) {
+                    data = new byte[Math.max(length, data.length * 2)];
+                }
+                in.readFully(data, 0, length);
+                nanos += delta;
+                return true;
+            } catch (EOFException e) {
+                return false;
+            }
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = in.readUnsignedByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Corrupt capture record");
+        }
+
+        public long getStartMillis() {
+            return startMillis;
+        }
+
+        public String getPortName() {
+            return portName;
+        }
+
+        public int getDirection() {
+            return direction;
+        }
+
+        /**
+         * Time of the current record since the capture started
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Usage: CaptureFile &lt;file.cap&gt; - print the capture as text
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: CaptureFile <file.cap>");
+            System.exit(2);
+        }
+        try (Reader reader = new Reader(new File(args[0]))) {
+            System.out.println("Capture of " + reader.getPortName() + " started "
+                    + Instant.ofEpochMilli(reader.getStartMillis()));
+            StringBuilder line = new StringBuilder();
+            while (reader.next()) {
+                line.setLength(0);
+                line.append(String.format("%12.6f ms %s %4d  ", reader.getNanos() / 1e6,
+                        reader.getDirection() == READ ? "<-" : "->", reader.getLength()));
+                for (int i = 0; i < reader.getLength(); i++) {
+                    int b = reader.getData()[i] & 0xFF;
+                    if (b == '\r') {
+                        line.append("\\r");
+                    } else if (b == '\n') {
+                        line.append("\\n");
+                    } else if (b < 0x20 || b >= 0x7F) {
+                        line.append(String.format("\\x%02X", b));
+                    } else {
+                        line.append((char) b);
+                    }
+                }
+                System.out.println(line);
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package main.java;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Transport decorator that records every byte read from and written to
+ * the wrapped transport, with nanosecond timing, to a {@link CaptureFile}.
+ * Replay the file with {@link ReplayTransport}.
+ *
+ * Each open of the port starts a new file, so a reconnect (close, then
+ * open) never overwrites the traffic that led up to the drop: the first
+ * session goes to the given file, later ones to name-2.cap, name-3.cap, ...
+ */
+public class CaptureTransport implements Transport {
+    private final Transport delegate;
+    private final File file;
+    private volatile CaptureFile.Writer capture;
+
+    public CaptureTransport(Transport delegate, File file) {
+        this.delegate = delegate;
+        this.file = file;
+    }
+
+    /**
+     * Wrap the transport if "rfid.capture.dir" is set, capturing to
+     * &lt;dir&gt;/&lt;port&gt;-&lt;yyyyMMdd-HHmmss&gt;.cap
+     */
+    public static Transport wrapIfEnabled(Transport transport) {
+        String dir = AppConfig.properties.getProperty("rfid.capture.dir", "").trim();
+        if (dir.isEmpty()) {
+            return transport;
+        }
+        String safeName = transport.getName().replaceAll("[^A-Za-z0-9._-]", "_");
+        String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        return new CaptureTransport(transport, new File(dir, safeName + "-" + stamp + ".cap"));
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public synchronized boolean open() {
+        if (!delegate.open()) {
+            return false;
+        }
+        if (capture == null) {
+            try {
+                File dir = file.getParentFile();
+                if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+                    throw new IOException("Cannot create directory " + dir);
+                }
+                File target = nextSessionFile();
+                capture = new CaptureFile.Writer(target, delegate.getName());
+                System.out.println("Capturing serial traffic of " + delegate.getName() + " to " + target);
+            } catch (IOException e) {
+                // The port still works, just without capture
+                System.err.println("Serial capture not started: " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The file for the next session; never one that exists already
+     */
+    private File nextSessionFile() {
+        String name = file.getName();
+        String stem = name.endsWith(".cap") ? name.substring(0, name.length() - 4) : name;
+        File target = file;
+        for (int session = 2; target.exists(); session++) {
+            target = new File(file.getParentFile(), stem + "-" + session + ".cap");
+        }
+        return target;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return delegate.isOpen();
+    }
+
+    @Override
+    public synchronized void close() {
+        delegate.close();
+        if (capture != null) {
+            try {
+                capture.close();
+            } catch (IOException e) {
+                System.err.println("Error closing serial capture: " + e.getMessage());
+            }
+            capture = null;
+        }
+    }
+
+    @Override
+    public int bytesAvailable() {
+        return delegate.bytesAvailable();
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+        int read = delegate.read(buffer, offset, length);
+        if (read > 0) {
+            record(CaptureFile.READ, buffer, offset, read);
+        }
+        return read;
+    }
+
+    @Override
+    public int write(byte[] data, int length) {
+        int written = delegate.write(data, length);
+        if (written > 0) {
+            record(CaptureFile.WRITE, data, 0, written);
+        }
+        return written;
+    }
+
+    @Override
+    public boolean setDataListener(Runnable onDataAvailable) {
+        return delegate.setDataListener(onDataAvailable);
+    }
+
+    @Override
+    public boolean setDisconnectListener(Runnable onDisconnect) {
+        return delegate.setDisconnectListener(onDisconnect);
+    }
+
+    @Override
+    public int getBaudRate() {
+        return delegate.getBaudRate();
+    }
+
+    @Override
+    public boolean setBaudRate(int baudRate) {
+        return delegate.setBaudRate(baudRate);
+    }
+
+    private void record(int direction, byte[] data, int offset, int length) {
+        CaptureFile.Writer writer = capture;
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.record(direction, data, offset, length);
+        } catch (IOException e) {
+            System.err.println("Serial capture stopped: " + e.getMessage());
+            capture = null;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package main.java;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps one reader connected. The connection counts as lost on a read or
+ * write error, a disconnect event from the port, or missed STATUS
+ * heartbeats on an otherwise silent line. The supervisor then reopens the
+ * port with exponential backoff (bounded by the maximum delay), runs the
+ * reconfiguration step (settings, line speed) and reports the recovery
+ * time. Auto-detection is never stopped, so detections already queued are
+ * delivered and reporting resumes as soon as the reader is configured.
+ *
+ * A port that could not be opened at start-up is retried the same way, so
+ * a reader plugged in later is picked up.
+ */
+public class ConnectionSupervisor {
+    private final SerialService reader;
+    private final Runnable reconfigure;
+    private final long heartbeatMillis;
+    private final int heartbeatMisses;
+    private final long minBackoffMillis;
+    private final long maxBackoffMillis;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile boolean running;
+    private volatile boolean recovering;
+    private volatile long lostAtMillis;
+    private long backoffMillis;
+    private int missedHeartbeats;
+
+    /**
+     * @param reconfigure run after every reconnect, before the reader counts as recovered
+     */
+    public ConnectionSupervisor(SerialService reader, Runnable reconfigure, long heartbeatMillis,
+                                int heartbeatMisses, long minBackoffMillis, long maxBackoffMillis) {
+        this.reader = reader;
+        this.reconfigure = reconfigure;
+        this.heartbeatMillis = heartbeatMillis;
+        this.heartbeatMisses = Math.max(1, heartbeatMisses);
+        this.minBackoffMillis = Math.max(1, minBackoffMillis);
+        this.maxBackoffMillis = Math.max(this.minBackoffMillis, maxBackoffMillis);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rfid-supervisor-" + reader.getPortName());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Supervisor configured from the rfid.heartbeat.* and rfid.reconnect.*
+     * properties, or null if "rfid.supervisor.enabled" is off
+     */
+    public static ConnectionSupervisor fromProperties(SerialService reader, Runnable reconfigure) {
+        if (!Boolean.parseBoolean(AppConfig.properties.getProperty("rfid.supervisor.enabled", "true"))) {
+            return null;
+        }
+        return new ConnectionSupervisor(reader, reconfigure,
+                Long.parseLong(AppConfig.properties.getProperty("rfid.heartbeat.ms", "2000")),
+                Integer.parseInt(AppConfig.properties.getProperty("rfid.heartbeat.misses", "2")),
+                Long.parseLong(AppConfig.properties.getProperty("rfid.reconnect.min.ms", "20")),
+                Long.parseLong(AppConfig.properties.getProperty("rfid.reconnect.max.ms", "1000")));
+    }
+
+    public void start() {
+        running = true;
+        reader.setConnectionLostHandler(reason -> scheduler.execute(this::beginRecovery));
+        if (heartbeatMillis > 0) {
+            scheduler.scheduleWithFixedDelay(this::heartbeat, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        }
+        if (!reader.isConnected()) {
+            scheduler.execute(this::beginRecovery);
+        }
+    }
+
+    public void stop() {
+        running = false;
+        reader.setConnectionLostHandler(null);
+        scheduler.shutdownNow();
+    }
+
+    public boolean isRecovering() {
+        return recovering;
+    }
+
+    /**
+     * Runs on the supervisor thread
+     */
+    private void beginRecovery() {
+        if (!running || recovering) {
+            return;
+        }
+        recovering = true;
+        lostAtMillis = System.currentTimeMillis();
+        backoffMillis = minBackoffMillis;
+        // The first attempt goes at once: a reader that merely glitched is back in milliseconds
+        attemptReconnect();
+    }
+
+    private void attemptReconnect() {
+        if (!running) {
+            return;
+        }
+        if (!reader.reopen()) {
+            // From then on it keeps retrying at the longest delay; say so once
+            if (backoffMillis < maxBackoffMillis || backoffMillis == minBackoffMillis) {
+                System.err.println("Reader on " + reader.getPortName() + " not back yet, retrying in "
+                        + backoffMillis + " ms");
+            }
+            scheduler.schedule(this::attemptReconnect, backoffMillis, TimeUnit.MILLISECONDS);
+            backoffMillis = Math.min(maxBackoffMillis, backoffMillis * 2);
+            return;
+        }
+
+        try {
+            reconfigure.run();
+        } catch (Exception e) {
+            System.err.println("Failed to reconfigure reader on " + reader.getPortName() + ": " + e.getMessage());
+        }
+        if (!running) {
+            return;
+        }
+        if (!reader.isConnected()) {
+            // Lost again while configuring: start over
+            recovering = false;
+            scheduler.execute(this::beginRecovery);
+            return;
+        }
+        recovering = false;
+        missedHeartbeats = 0;
+        reader.connectionRestored(System.currentTimeMillis() - lostAtMillis);
+    }
+
+    /**
+     * STATUS on a line that has been silent for a heartbeat interval; a
+     * reader that is reporting tags is not pinged
+     */
+    private void heartbeat() {
+        if (!running || recovering || !reader.isConnected()) {
+            return;
+        }
+        if (System.currentTimeMillis() - reader.getLastReceiveMillis() < heartbeatMillis) {
+            missedHeartbeats = 0;
+            return;
+        }
+        try {
+            reader.sendCommandAsync("STATUS", heartbeatMillis, IoScheduler.Priority.STATUS).get();
+            missedHeartbeats = 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            if (++missedHeartbeats >= heartbeatMisses) {
+                missedHeartbeats = 0;
+                reader.connectionLost(heartbeatMisses + " heartbeats missed");
+            }
+        }
+    }
+}
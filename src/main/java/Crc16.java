@@ -0,0 +1,47 @@
+package main.java;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Table-driven CRC-16/CCITT-FALSE (polynomial 0x1021, initial value 0xFFFF),
+ * as used by the reader's binary frames. One table lookup per byte.
+ */
+public final class Crc16 {
+    public static final int INITIAL = 0xFFFF;
+
+    private static final int[] TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+            }
+            TABLE[i] = crc & 0xFFFF;
+        }
+    }
+
+    private Crc16() {
+    }
+
+    public static int update(int crc, byte[] data, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            crc = ((crc << 8) ^ TABLE[((crc >>> 8) ^ data[i]) & 0xFF]) & 0xFFFF;
+        }
+        return crc;
+    }
+
+    /**
+     * CRC of the bytes between from (inclusive) and to (exclusive), without moving the buffer's position
+     */
+    public static int of(ByteBuffer buffer, int from, int to) {
+        if (buffer.hasArray()) {
+            return update(INITIAL, buffer.array(), buffer.arrayOffset() + from, to - from);
+        }
+        int crc = INITIAL;
+        for (int i = from; i < to; i++) {
+            crc = ((crc << 8) ^ TABLE[((crc >>> 8) ^ buffer.get(i)) & 0xFF]) & 0xFFFF;
+        }
+        return crc;
+    }
+}
@@ -0,0 +1,474 @@
+package main.java;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports tag events and write results for downstream reporting as
+ * gzip-compressed CSV, one directory per day:
+ * &lt;dir&gt;/2024-05-17/detections-093000-001.csv.gz.
+ *
+ * Callers only offer a record to a bounded queue, so a reader's I/O thread
+ * never waits for the disk; records that don't fit are dropped and
+ * counted. A background thread writes them in batches and flushes the
+ * compressor at most every "export.flush.ms", so each flush ends a deflate
+ * block and everything before it can be read back even from a file still
+ * being written. A file is rolled when it reaches "export.roll.mb"
+ * compressed, is "export.roll.minutes" old or the day changes. Files being
+ * written end in .part and are renamed when complete.
+ *
+ * {@link #load} streams a day's files back record by record in constant
+ * memory.
+ */
+public class DetectionExporter {
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter FILE_TIME_FORMAT = DateTimeFormatter.ofPattern("HHmmss");
+    private static final String FILE_PREFIX = "detections-";
+    private static final String FILE_SUFFIX = ".csv.gz";
+    private static final String PART_SUFFIX = ".part";
+    private static final String HEADER = "ts,time,reader,tag,event,result,dwell_ms\n";
+
+    private final File directory;
+    private final long rollBytes;
+    private final long rollMillis;
+    private final long flushMillis;
+    private final int batchSize;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private final BlockingQueue<Entry> queue;
+    private final AtomicLong dropped = new AtomicLong();
+    private Thread writerThread;
+    private volatile boolean running;
+
+    // Current file, only touched by the writer thread
+    private File partFile;
+    private Writer writer;
+    private LocalDate fileDay;
+    private long fileOpenedAt;
+    private long fileRecords;
+    private long lastFlush;
+    private boolean unflushed;
+    private volatile long exported;
+
+    public DetectionExporter(File directory, long rollBytes, long rollMillis, long flushMillis,
+                             int queueCapacity, int batchSize) {
+        this.directory = directory;
+        this.rollBytes = rollBytes;
+        this.rollMillis = rollMillis;
+        this.flushMillis = Math.max(1, flushMillis);
+        this.batchSize = Math.max(1, batchSize);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * Exporter configured from the export.* properties, or null if it is disabled
+     */
+    public static DetectionExporter fromProperties() {
+        if (!Boolean.parseBoolean(AppConfig.properties.getProperty("export.enabled", "false"))) {
+            return null;
+        }
+        return new DetectionExporter(new File(AppConfig.properties.getProperty("export.dir", "exports")),
+                Long.parseLong(AppConfig.properties.getProperty("export.roll.mb", "64")) * 1024 * 1024,
+                Long.parseLong(AppConfig.properties.getProperty("export.roll.minutes", "60")) * 60000,
+                Long.parseLong(AppConfig.properties.getProperty("export.flush.ms", "1000")),
+                Integer.parseInt(AppConfig.properties.getProperty("export.queue", "65536")),
+                Integer.parseInt(AppConfig.properties.getProperty("export.batch", "1024")));
+    }
+
+    /**
+     * Complete files left over from a crash and start the writer thread
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create export directory: " + directory.getAbsolutePath());
+        }
+        File[] days = directory.listFiles(File::isDirectory);
+        for (File day : days == null ? new File[0] : days) {
+            for (File part : listFiles(day, PART_SUFFIX)) {
+                // Readable up to its last flush; the loader stops at the truncated end
+                complete(part);
+            }
+        }
+
+        running = true;
+        writerThread = new Thread(this::writeLoop, "rfid-export-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        System.out.println("Detection export to " + directory.getAbsolutePath());
+    }
+
+    public void onTagEvent(TagEvent event) {
+        TagJournal.Kind kind = event.getType() == TagEvent.Type.ENTER ? TagJournal.Kind.ENTER
+                : event.getType() == TagEvent.Type.EXIT ? TagJournal.Kind.EXIT : TagJournal.Kind.REPORT;
+        offer(new Entry(event.getTimestamp(), kind, TagJournal.Result.NONE, event.getReader(), event.getTagId(),
+                event.getDwellMillis()));
+    }
+
+    public void onWrite(String reader, String tagId, boolean verified) {
+        offer(new Entry(System.currentTimeMillis(), TagJournal.Kind.WRITE,
+                verified ? TagJournal.Result.OK : TagJournal.Result.FAILED, reader, tagId, 0));
+    }
+
+    /**
+     * Never blocks; a full queue drops the record
+     */
+    private void offer(Entry entry) {
+        if (!running || !queue.offer(entry)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    public long getExported() {
+        return exported;
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        StringBuilder text = new StringBuilder(batchSize * 64);
+        try {
+            while (running || !queue.isEmpty()) {
+                Entry first = queue.poll(Math.min(flushMillis, 500), TimeUnit.MILLISECONDS);
+                long now = System.currentTimeMillis();
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    write(batch, text);
+                    batch.clear();
+                }
+                maintain(now);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeFile();
+        }
+    }
+
+    private void write(List<Entry> batch, StringBuilder text) {
+        int i = 0;
+        while (i < batch.size()) {
+            LocalDate day = Instant.ofEpochMilli(batch.get(i).timestamp).atZone(zone).toLocalDate();
+            long dayStart = day.atStartOfDay(zone).toInstant().toEpochMilli();
+            long dayEnd = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+            text.setLength(0);
+            int start = i;
+            // Everything up to the next change of day goes into the same file
+            while (i < batch.size() && (i == start
+                    || (batch.get(i).timestamp >= dayStart && batch.get(i).timestamp < dayEnd))) {
+                format(batch.get(i), text);
+                i++;
+            }
+            try {
+                if (writer != null && !day.equals(fileDay)) {
+                    closeFile();
+                }
+                if (writer == null) {
+                    openFile(day);
+                }
+                writer.write(text.toString());
+                fileRecords += i - start;
+                exported += i - start;
+                unflushed = true;
+            } catch (IOException e) {
+                System.err.println("Detection export failed, " + (i - start) + " records lost: " + e.getMessage());
+                dropped.addAndGet(i - start);
+                closeFile();
+            }
+        }
+    }
+
+    /**
+     * Periodic flush and rollover, also while no records come in
+     */
+    private void maintain(long now) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            if (unflushed && (now - lastFlush >= flushMillis || !running)) {
+                writer.flush();
+                unflushed = false;
+                lastFlush = now;
+            }
+            if ((rollBytes > 0 && partFile.length() >= rollBytes)
+                    || (rollMillis > 0 && now - fileOpenedAt >= rollMillis)) {
+                closeFile();
+            }
+        } catch (IOException e) {
+            System.err.println("Detection export flush failed: " + e.getMessage());
+            closeFile();
+        }
+    }
+
+    private void openFile(LocalDate day) throws IOException {
+        File dayDirectory = new File(directory, DAY_FORMAT.format(day));
+        if (!dayDirectory.isDirectory() && !dayDirectory.mkdirs()) {
+            throw new IOException("Cannot create export directory: " + dayDirectory.getAbsolutePath());
+        }
+        String time = FILE_TIME_FORMAT.format(ZonedDateTime.now(zone));
+        File file;
+        int sequence = 1;
+        do {
+            file = new File(dayDirectory, String.format("%s%s-%03d%s%s", FILE_PREFIX, time, sequence++,
+                    FILE_SUFFIX, PART_SUFFIX));
+        } while (file.exists() || new File(dayDirectory, finalName(file)).exists());
+
+        // Sync flush: flush() ends a deflate block, so readers see the data without the gzip trailer
+        writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(new FileOutputStream(file), 64 * 1024, true), StandardCharsets.UTF_8), 64 * 1024);
+        partFile = file;
+        fileDay = day;
+        fileOpenedAt = System.currentTimeMillis();
+        lastFlush = fileOpenedAt;
+        fileRecords = 0;
+        writer.write(HEADER);
+    }
+
+    private void closeFile() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            System.err.println("Error closing export file " + partFile + ": " + e.getMessage());
+        }
+        File done = complete(partFile);
+        System.out.println("Exported " + fileRecords + " records to " + done
+                + (dropped.get() > 0 ? " (" + dropped.get() + " dropped so far)" : ""));
+        writer = null;
+        partFile = null;
+        unflushed = false;
+    }
+
+    private static File complete(File part) {
+        File done = new File(part.getParentFile(), finalName(part));
+        if (!part.renameTo(done)) {
+            System.err.println("Cannot complete export file: " + part);
+            return part;
+        }
+        return done;
+    }
+
+    private static String finalName(File part) {
+        String name = part.getName();
+        return name.substring(0, name.length() - PART_SUFFIX.length());
+    }
+
+    private void format(Entry entry, StringBuilder out) {
+        out.append(entry.timestamp).append(',')
+                .append(Instant.ofEpochMilli(entry.timestamp)).append(',');
+        appendField(out, entry.reader).append(',');
+        appendField(out, entry.tagId).append(',')
+                .append(entry.kind).append(',')
+                .append(entry.result).append(',')
+                .append(entry.dwellMillis).append('\n');
+    }
+
+    /**
+     * Reader names and tag IDs never need quoting; separators are replaced just in case
+     */
+    private static StringBuilder appendField(StringBuilder out, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            out.append(c == ',' || c == '\n' || c == '\r' ? ' ' : c);
+        }
+        return out;
+    }
+
+    /**
+     * Stop accepting records, write out the queue and complete the current file
+     */
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            thread = writerThread;
+        }
+        try {
+            thread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static File[] listFiles(File dayDirectory, String suffix) {
+        File[] files = dayDirectory.listFiles((dir, name) -> name.startsWith(FILE_PREFIX) && name.endsWith(suffix));
+        if (files == null) {
+            return new File[0];
+        }
+        // Names start with the opening time, so they sort in write order
+        Arrays.sort(files);
+        return files;
+    }
+
+    private static final class Entry {
+        final long timestamp;
+        final TagJournal.Kind kind;
+        final TagJournal.Result result;
+        final String reader;
+        final String tagId;
+        final long dwellMillis;
+
+        Entry(long timestamp, TagJournal.Kind kind, TagJournal.Result result, String reader, String tagId,
+              long dwellMillis) {
+            this.timestamp = timestamp;
+            this.kind = kind;
+            this.result = result;
+            this.reader = reader;
+            this.tagId = tagId;
+            this.dwellMillis = dwellMillis;
+        }
+    }
+
+    /**
+     * Receives records while loading. The record is reused for the next
+     * one, so copy out anything that must be kept.
+     */
+    public interface RecordVisitor {
+        void visit(Record record) throws IOException;
+    }
+
+    /**
+     * One exported line, parsed on access
+     */
+    public static final class Record {
+        private String line;
+        private final int[] commas = new int[6];
+
+        private boolean parse(String text) {
+            int found = 0;
+            for (int i = 0; i < text.length() && found < commas.length; i++) {
+                if (text.charAt(i) == ',') {
+                    commas[found++] = i;
+                }
+            }
+            line = text;
+            return found == commas.length;
+        }
+
+        public long getTimestamp() {
+            return Long.parseLong(line.substring(0, commas[0]));
+        }
+
+        public String getReader() {
+            return line.substring(commas[1] + 1, commas[2]);
+        }
+
+        public String getTagId() {
+            return line.substring(commas[2] + 1, commas[3]);
+        }
+
+        public TagJournal.Kind getKind() {
+            return TagJournal.Kind.valueOf(line.substring(commas[3] + 1, commas[4]));
+        }
+
+        public TagJournal.Result getResult() {
+            return TagJournal.Result.valueOf(line.substring(commas[4] + 1, commas[5]));
+        }
+
+        public long getDwellMillis() {
+            return Long.parseLong(line.substring(commas[5] + 1));
+        }
+
+        /**
+         * The CSV line as exported, without the line break
+         */
+        public String getLine() {
+            return line;
+        }
+    }
+
+    /**
+     * Stream every record of one day, file by file in write order, reading
+     * one line at a time. Files still being written are read up to their
+     * last flush.
+     * @return the number of records visited
+     */
+    public static long load(File directory, LocalDate day, RecordVisitor visitor) throws IOException {
+        File dayDirectory = new File(directory, DAY_FORMAT.format(day));
+        List<File> files = new ArrayList<>(Arrays.asList(listFiles(dayDirectory, FILE_SUFFIX)));
+        files.addAll(Arrays.asList(listFiles(dayDirectory, FILE_SUFFIX + PART_SUFFIX)));
+
+        Record record = new Record();
+        long visited = 0;
+        for (File file : files) {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(new FileInputStream(file), 64 * 1024), StandardCharsets.UTF_8), 64 * 1024)) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.startsWith("ts,") || !record.parse(line)) {
+                        continue; // header, or a line cut off by a crash
+                    }
+                    visitor.visit(record);
+                    visited++;
+                }
+            } catch (EOFException e) {
+                // Unfinished file: everything up to the last flush has been read
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Usage: DetectionExporter load &lt;dir&gt; &lt;yyyy-MM-dd&gt; [out.csv]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3 || !args[0].equals("load")) {
+            System.err.println("Usage: DetectionExporter load <dir> <yyyy-MM-dd> [out.csv]");
+            System.exit(2);
+        }
+        File directory = new File(args[1]);
+        LocalDate day = LocalDate.parse(args[2], DAY_FORMAT);
+
+        long started = System.nanoTime();
+        long records;
+        if (args.length > 3) {
+            try (Writer out = new BufferedWriter(new FileWriter(args[3]))) {
+                out.write(HEADER);
+                records = load(directory, day, record -> {
+                    out.write(record.getLine());
+                    out.write('\n');
+                });
+            }
+        } else {
+            records = load(directory, day, record -> { });
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+        System.out.printf("%d records in %.3f s (%.0f records/s)%n", records, seconds, records / seconds);
+    }
+}
@@ -0,0 +1,201 @@
+package main.java;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Detect-to-callback latency of auto-detection on the in-memory reader
+ * ({@link PipelineBenchmark.LoopbackTransport}): the time from a tag's frame
+ * arriving at the port to the detection callback running.
+ *
+ *   poll  - the old loop: a blocking 64-byte read with the 500 ms timeout,
+ *           then a 200 ms sleep, as auto-detection worked before it was
+ *           driven by the port's data-available event
+ *   event - SerialService.startAutoDetection()
+ *
+ * Frames arrive after a random idle gap, so they land at any point of the
+ * poll loop's cycle. The loopback delivers a frame at once; on a real port
+ * both paths also pay the frame's time on the wire.
+ *
+ * Usage: DetectionLatencyBenchmark [-samples n] [-gap max idle ms] [poll|event ...]
+ */
+public class DetectionLatencyBenchmark {
+    private static final long POLL_READ_TIMEOUT_MS = 500;
+    private static final int POLL_READ_BYTES = 64;
+    private static final long POLL_SLEEP_MS = 200;
+
+    private final int samples;
+    private final int maxGapMillis;
+    private final Random random = new Random(42);
+    private long nextTag = 0x1000;
+
+    public DetectionLatencyBenchmark(int samples, int maxGapMillis) {
+        this.samples = samples;
+        this.maxGapMillis = maxGapMillis;
+    }
+
+    /**
+     * Starts delivering detections to the callback; closing stops it
+     */
+    private interface Detector {
+        void close();
+    }
+
+    private interface DetectorFactory {
+        Detector start(PipelineBenchmark.LoopbackTransport transport, Consumer<String> callback);
+    }
+
+    public void run(String name) throws InterruptedException {
+        switch (name) {
+            case "poll":
+                measure(name, this::poll);
+                break;
+            case "event":
+                measure(name, DetectionLatencyBenchmark::event);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown benchmark: " + name);
+        }
+    }
+
+    private void measure(String name, DetectorFactory factory) throws InterruptedException {
+        PipelineBenchmark.LoopbackTransport transport = new PipelineBenchmark.LoopbackTransport("BENCH");
+        AtomicLong detectedAt = new AtomicLong();
+        CountDownLatch[] detected = new CountDownLatch[1];
+        long[] latencies = new long[samples];
+        int missed = 0;
+        Detector detector = factory.start(transport, tag -> {
+            detectedAt.set(System.nanoTime());
+            detected[0].countDown();
+        });
+        try {
+            for (int i = 0; i < samples; i++) {
+                Thread.sleep(random.nextInt(maxGapMillis + 1));
+                detected[0] = new CountDownLatch(1);
+                // Every frame carries a tag not seen before, so neither path drops it as a repeat
+                String tag = String.format("E2009999%016X", nextTag++);
+                long sent = System.nanoTime();
+                transport.inject(tag);
+                if (detected[0].await(2, TimeUnit.SECONDS)) {
+                    latencies[i] = detectedAt.get() - sent;
+                } else {
+                    latencies[i] = Long.MAX_VALUE;
+                    missed++;
+                }
+            }
+        } finally {
+            detector.close();
+        }
+
+        Arrays.sort(latencies);
+        int measured = samples - missed;
+        System.out.println(String.format("%-6s %8d %10.2f %10.2f %10.2f %8d", name, measured,
+                percentileMillis(latencies, measured, 0.50), percentileMillis(latencies, measured, 0.99),
+                measured == 0 ? Double.NaN : latencies[measured - 1] / 1e6, missed));
+    }
+
+    private static double percentileMillis(long[] sorted, int count, double percentile) {
+        return count == 0 ? Double.NaN : sorted[Math.min(count - 1, (int) (count * percentile))] / 1e6;
+    }
+
+    /**
+     * The polling loop auto-detection used before, on its own thread
+     */
+    private Detector poll(PipelineBenchmark.LoopbackTransport transport, Consumer<String> callback) {
+        transport.open();
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread thread = new Thread(() -> {
+            String lastDetectedTag = "";
+            byte[] buffer = new byte[POLL_READ_BYTES];
+            while (running.get()) {
+                try {
+                    String tag = blockingRead(transport, buffer);
+                    if (!tag.isEmpty()) {
+                        if (!tag.equals(lastDetectedTag)) {
+                            lastDetectedTag = tag;
+                            callback.accept(tag);
+                        }
+                    } else {
+                        lastDetectedTag = "";
+                    }
+                    Thread.sleep(POLL_SLEEP_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }, "rfid-bench-poll");
+        thread.setDaemon(true);
+        thread.start();
+        return () -> {
+            running.set(false);
+            thread.interrupt();
+            transport.close();
+        };
+    }
+
+    /**
+     * A blocking read as the serial port did it: returns once the buffer is
+     * full or the timeout has passed, whichever comes first
+     * @return the first line read, or "" if nothing arrived
+     */
+    private static String blockingRead(PipelineBenchmark.LoopbackTransport transport, byte[] buffer)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(POLL_READ_TIMEOUT_MS);
+        while (transport.bytesAvailable() < buffer.length && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        int len = transport.read(buffer, 0, buffer.length);
+        String text = new String(buffer, 0, len).trim();
+        int end = text.indexOf('\r');
+        return end < 0 ? text : text.substring(0, end);
+    }
+
+    private static Detector event(PipelineBenchmark.LoopbackTransport transport, Consumer<String> callback) {
+        SerialService service = new SerialService(transport);
+        service.open();
+        service.startAutoDetection(callback);
+        return () -> {
+            service.stopAutoDetection();
+            service.closePort();
+        };
+    }
+
+    public static void main(String[] args) throws Exception {
+        int samples = 200;
+        int gap = 300;
+        String[] names = {"poll", "event"};
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-samples":
+                    samples = Integer.parseInt(args[++i]);
+                    break;
+                case "-gap":
+                    gap = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    names = Arrays.copyOfRange(args, i, args.length);
+                    i = args.length;
+            }
+        }
+
+        AppConfig.load();
+        AppConfig.properties.setProperty("rfid.config.cache", "false");
+        // The loopback reader speaks the ASCII protocol
+        AppConfig.properties.setProperty("rfid.protocol", "ascii");
+        AppConfig.properties.setProperty("metrics.jmx", "false");
+        AppConfig.properties.setProperty("metrics.snapshot.seconds", "0");
+
+        DetectionLatencyBenchmark benchmark = new DetectionLatencyBenchmark(samples, gap);
+        System.out.println(String.format("%-6s %8s %10s %10s %10s %8s", "path", "samples", "p50 ms", "p99 ms", "max ms", "missed"));
+        for (String name : names) {
+            benchmark.run(name);
+        }
+        System.exit(0);
+    }
+}
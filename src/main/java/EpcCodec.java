@@ -0,0 +1,98 @@
+package main.java;
+
+/**
+ * Packs tag IDs into two longs so large tag tables can be kept as primitive
+ * arrays instead of Strings.
+ *
+ * Hex IDs (EPCs) of up to 30 digits use 4 bits per digit; other IDs of up to
+ * 20 characters from the printable range ' '..'_' (digits, upper case and
+ * common punctuation) use 6 bits per character. The top of the high word
+ * holds the length and which scheme was used, so a packed key is never 0/0
+ * and unpacks back to the exact original string.
+ */
+public final class EpcCodec {
+    public static final int MAX_HEX_LENGTH = 30;
+    public static final int MAX_TEXT_LENGTH = 20;
+
+    private static final int LENGTH_SHIFT = 56;
+    private static final long TEXT_SCHEME = 1L << 61;
+    private static final long PAYLOAD_MASK = (1L << LENGTH_SHIFT) - 1;
+
+    private EpcCodec() {
+    }
+
+    /**
+     * Pack a tag ID into out[0] (high) and out[1] (low)
+     * @return false if the ID is empty, too long or has characters that cannot be packed
+     */
+    public static boolean pack(String tagId, long[] out) {
+        int length = tagId.length();
+        if (length == 0) {
+            return false;
+        }
+        
+        boolean hex = length <= MAX_HEX_LENGTH;
+        for (int i = 0; i < length && hex; i++) {
+            hex = hexValue(tagId.charAt(i)) >= 0;
+        }
+        if (!hex && length > MAX_TEXT_LENGTH) {
+            return false;
+        }
+        
+        int width = hex ? 4 : 6;
+        long hi = 0;
+        long lo = 0;
+        for (int i = 0; i < length; i++) {
+            char c = tagId.charAt(i);
+            int value;
+            if (hex) {
+                value = hexValue(c);
+            } else {
+                if (c < ' ' || c > '_') {
+                    return false;
+                }
+                value = c - ' ';
+            }
+            hi = (hi << width) | (lo >>> (64 - width));
+            lo = (lo << width) | value;
+        }
+        
+        hi |= ((long) length) << LENGTH_SHIFT;
+        if (!hex) {
+            hi |= TEXT_SCHEME;
+        }
+        out[0] = hi;
+        out[1] = lo;
+        return true;
+    }
+
+    /**
+     * Rebuild the tag ID from a key produced by {@link #pack}
+     */
+    public static String unpack(long hi, long lo) {
+        int length = (int) ((hi >>> LENGTH_SHIFT) & 0x1F);
+        boolean text = (hi & TEXT_SCHEME) != 0;
+        int width = text ? 6 : 4;
+        long mask = (1L << width) - 1;
+        
+        hi &= PAYLOAD_MASK;
+        char[] chars = new char[length];
+        for (int i = length - 1; i >= 0; i--) {
+            int value = (int) (lo & mask);
+            chars[i] = text ? (char) (' ' + value) : Character.toUpperCase(Character.forDigit(value, 16));
+            lo = (lo >>> width) | (hi << (64 - width));
+            hi >>>= width;
+        }
+        return new String(chars);
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,161 @@
+package main.java;
+
+/**
+ * Incremental frame decoder for the reader's serial stream.
+ * Bytes are appended as they arrive from the port into a fixed ring buffer,
+ * and complete frames are copied out one at a time, so frames split across
+ * reads or glued together in one read are reassembled correctly.
+ * Nothing is allocated after construction.
+ *
+ * Not thread-safe; use it from a single thread.
+ */
+public class FrameDecoder {
+
+    public enum Mode {
+        /** Frames end with CR and/or LF (the DB02UHF ASCII format) */
+        DELIMITED,
+        /** Frames start with a one-byte payload length */
+        LENGTH_PREFIXED
+    }
+
+    private final Mode mode;
+    private final byte[] ring;
+    private final int mask;
+    private int head;       // index of the first unread byte
+    private int count;      // number of buffered bytes
+    private int scanned;    // bytes after head already checked for a delimiter
+    private long droppedBytes;
+
+    public FrameDecoder(Mode mode, int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 16) - 1) << 1;
+        this.mode = mode;
+        this.ring = new byte[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Build a decoder from the "rfid.frame.mode" property ("delimited" or "length")
+     */
+    public static FrameDecoder fromProperties(int capacity) {
+        String value = AppConfig.properties.getProperty("rfid.frame.mode", "delimited");
+        Mode mode = "length".equalsIgnoreCase(value.trim()) ? Mode.LENGTH_PREFIXED : Mode.DELIMITED;
+        return new FrameDecoder(mode, capacity);
+    }
+
+    /**
+     * Append received bytes. If the ring is full the oldest bytes are
+     * discarded, since a frame that large can no longer be valid.
+     */
+    public void write(byte[] src, int off, int len) {
+        for (int i = 0; i < len; i++) {
+            if (count == ring.length) {
+                head = (head + 1) & mask;
+                count--;
+                droppedBytes++;
+                if (scanned > 0) {
+                    scanned--;
+                }
+            }
+            ring[(head + count) & mask] = src[off + i];
+            count++;
+        }
+    }
+
+    /**
+     * Copy the next complete frame (without delimiter or length prefix) into dst.
+     * @return the frame length, or -1 if no complete frame is buffered
+     */
+    public int nextFrame(byte[] dst) {
+        return mode == Mode.DELIMITED ? nextDelimited(dst) : nextLengthPrefixed(dst);
+    }
+
+    /**
+     * Copy out whatever is buffered as one frame, for readers that end a
+     * report with line silence instead of a terminator.
+     * @return the frame length, or -1 if nothing usable is buffered
+     */
+    public int drainPartial(byte[] dst) {
+        if (mode != Mode.DELIMITED) {
+            return -1; // a short length-prefixed frame is incomplete, keep waiting
+        }
+        skipDelimiters();
+        if (count == 0) {
+            return -1;
+        }
+        return take(count, 0, dst);
+    }
+
+    public int buffered() {
+        return count;
+    }
+
+    /**
+     * Bytes that can be written without discarding buffered data
+     */
+    public int free() {
+        return ring.length - count;
+    }
+
+    public long getDroppedBytes() {
+        return droppedBytes;
+    }
+
+    public void reset() {
+        head = 0;
+        count = 0;
+        scanned = 0;
+    }
+
+    private int nextDelimited(byte[] dst) {
+        skipDelimiters();
+        while (scanned < count) {
+            if (isDelimiter(ring[(head + scanned) & mask])) {
+                return take(scanned, 1, dst);
+            }
+            scanned++;
+        }
+        return -1;
+    }
+
+    private int nextLengthPrefixed(byte[] dst) {
+        if (count == 0) {
+            return -1;
+        }
+        int length = ring[head] & 0xFF;
+        if (count < length + 1) {
+            return -1;
+        }
+        head = (head + 1) & mask;
+        count--;
+        return take(length, 0, dst);
+    }
+
+    /**
+     * Remove a frame of the given length plus trailing bytes from the ring,
+     * copying as much of the frame as fits into dst.
+     */
+    private int take(int length, int trailing, byte[] dst) {
+        int copied = Math.min(length, dst.length);
+        int first = Math.min(copied, ring.length - head);
+        System.arraycopy(ring, head, dst, 0, first);
+        System.arraycopy(ring, 0, dst, first, copied - first);
+
+        int consumed = length + trailing;
+        head = (head + consumed) & mask;
+        count -= consumed;
+        scanned = 0;
+        return copied;
+    }
+
+    private void skipDelimiters() {
+        while (count > 0 && isDelimiter(ring[head])) {
+            head = (head + 1) & mask;
+            count--;
+            scanned = 0;
+        }
+    }
+
+    private static boolean isDelimiter(byte b) {
+        return b == '\r' || b == '\n';
+    }
+}
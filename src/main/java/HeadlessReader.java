@@ -0,0 +1,199 @@
+package main.java;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Entry point for unattended readers: runs the configured readers without
+ * JavaFX and streams their tag events as newline-delimited JSON, e.g.
+ *
+ *   {"seq":1,"type":"ENTER","reader":"COM3","tag":"E2003412...","ts":1700000000000}
+ *
+ * Usage: HeadlessReader [--out file]
+ * Events go to stdout unless --out (or "headless.output") names a file,
+ * which is appended to. All other output goes to stderr so stdout stays
+ * pure JSON. Stops cleanly on SIGINT/SIGTERM.
+ */
+public class HeadlessReader {
+    private static final int QUEUE_CAPACITY = 10000;
+    private static final int WRITE_BATCH_SIZE = 512;
+
+    private final ReaderPool readerPool;
+    private final BlockingQueue<TagEvent> events = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private final Writer out;
+    private final Thread writer;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private volatile boolean running = true;
+
+    public HeadlessReader(ReaderPool readerPool, OutputStream output) {
+        this.readerPool = readerPool;
+        this.out = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        this.writer = new Thread(this::writeEvents, "rfid-ndjson-writer");
+    }
+
+    public void start() {
+        writer.start();
+        // Runs on the readers' I/O threads, so never block on the output
+        readerPool.addTagEventListener(event -> {
+            if (!events.offer(event)) {
+                droppedEvents.incrementAndGet();
+            }
+        });
+        for (SerialService reader : readerPool.getReaders()) {
+            reader.startAutoDetection(tagId -> { });
+        }
+    }
+
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        readerPool.close();
+        running = false;
+        try {
+            writer.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (droppedEvents.get() > 0) {
+            System.err.println("Tag events dropped because the output could not keep up: " + droppedEvents.get());
+        }
+        stopped.countDown();
+    }
+
+    public void awaitStop() throws InterruptedException {
+        stopped.await();
+    }
+
+    private void writeEvents() {
+        List<TagEvent> batch = new ArrayList<>(WRITE_BATCH_SIZE);
+        StringBuilder line = new StringBuilder(128);
+        try {
+            while (running || !events.isEmpty()) {
+                TagEvent first = events.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                events.drainTo(batch, WRITE_BATCH_SIZE - 1);
+                for (TagEvent event : batch) {
+                    line.setLength(0);
+                    event.appendJson(line, sequence.incrementAndGet());
+                    out.write(line.toString());
+                }
+                // One flush per batch keeps the stream live without a syscall per event
+                out.flush();
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.err.println("Tag event output stopped: " + e.getMessage());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        long started = System.nanoTime();
+        // The readers report status with System.out; keep the real stdout for events only
+        PrintStream stdout = System.out;
+        System.setOut(System.err);
+        AppConfig.load();
+
+        String output = AppConfig.properties.getProperty("headless.output", "-");
+        for (int i = 0; i < args.length; i++) {
+            if ("--out".equals(args[i]) && i + 1 < args.length) {
+                output = args[++i];
+            }
+        }
+
+        ReaderPool readerPool;
+        try {
+            readerPool = new ReaderPool(ReaderPool.configuredPorts());
+        } catch (IllegalStateException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+        int opened = readerPool.openAll();
+        if (opened == 0) {
+            System.err.println("No RFID reader could be opened");
+            readerPool.close();
+            System.exit(1);
+        }
+        readerPool.configureReaders();
+        // Reconnect readers that drop out instead of stopping the stream
+        readerPool.startSupervision();
+
+        TagJournal journal = TagJournal.fromProperties();
+        if (journal != null) {
+            try {
+                journal.open();
+                readerPool.journalTo(journal);
+            } catch (IOException e) {
+                System.err.println("Tag journal not started: " + e.getMessage());
+                journal = null;
+            }
+        }
+
+        DetectionExporter exporter = DetectionExporter.fromProperties();
+        if (exporter != null) {
+            try {
+                exporter.start();
+                readerPool.exportTo(exporter);
+            } catch (IOException e) {
+                System.err.println("Detection export not started: " + e.getMessage());
+                exporter = null;
+            }
+        }
+
+        TagEventServer eventServer = TagEventServer.fromProperties();
+        if (eventServer != null) {
+            try {
+                eventServer.start();
+                readerPool.addTagEventListener(eventServer::publish);
+            } catch (IOException e) {
+                System.err.println("Tag event server not started: " + e.getMessage());
+                eventServer = null;
+            }
+        }
+
+        OutputStream stream = "-".equals(output) ? stdout : new FileOutputStream(output, true);
+        HeadlessReader reader = new HeadlessReader(readerPool, stream);
+        TagEventServer server = eventServer;
+        TagJournal tagJournal = journal;
+        DetectionExporter detectionExporter = exporter;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            reader.stop();
+            if (tagJournal != null) {
+                tagJournal.close();
+            }
+            if (detectionExporter != null) {
+                detectionExporter.close();
+            }
+            if (server != null) {
+                server.close();
+            }
+        }, "rfid-shutdown"));
+        reader.start();
+
+        System.err.println("Headless reader ready on " + opened + " port(s) in "
+                + (System.nanoTime() - started) / 1000000L + " ms, writing to "
+                + ("-".equals(output) ? "stdout" : output));
+        reader.awaitStop();
+    }
+}
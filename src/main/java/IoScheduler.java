@@ -0,0 +1,133 @@
+package main.java;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single owning I/O thread for one serial port, fed from a priority queue.
+ *
+ * Everything that touches the reader runs here, so writes never race the
+ * inventory stream. Higher-priority work (writes, configuration, status
+ * probes) is taken before queued inventory processing; tasks of equal
+ * priority run in submission order. Inventory work is split into short
+ * tasks, so a write waits at most for the one that is already running.
+ */
+public class IoScheduler {
+
+    /** In order of precedence */
+    public enum Priority {
+        WRITE,
+        CONFIG,
+        STATUS,
+        INVENTORY
+    }
+
+    private final PriorityBlockingQueue<Task> queue = new PriorityBlockingQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    public IoScheduler(String name) {
+        thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queue the action on the I/O thread
+     * @return false if the scheduler has been shut down and the action was dropped
+     */
+    public boolean execute(Priority priority, Runnable action) {
+        try {
+            enqueue(new Task(priority, sequence.getAndIncrement(), action, null));
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Run the action on the I/O thread
+     * @return completes with the action's result, or exceptionally if it throws or the scheduler shuts down
+     */
+    public <T> CompletableFuture<T> submit(Priority priority, Callable<T> action) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Runnable task = () -> {
+            try {
+                future.complete(action.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        };
+        Runnable abort = () -> future.completeExceptionally(new RejectedExecutionException("I/O scheduler stopped"));
+        
+        try {
+            enqueue(new Task(priority, sequence.getAndIncrement(), task, abort));
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public boolean isIoThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    public int queuedTasks() {
+        return queue.size();
+    }
+
+    public void shutdown() {
+        running = false;
+        thread.interrupt();
+        
+        Task task;
+        while ((task = queue.poll()) != null) {
+            if (task.abort != null) {
+                task.abort.run();
+            }
+        }
+    }
+
+    private void enqueue(Task task) {
+        if (!running) {
+            throw new RejectedExecutionException("I/O scheduler stopped");
+        }
+        queue.add(task);
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                queue.take().action.run();
+            } catch (InterruptedException e) {
+                break;
+            } catch (Throwable e) {
+                System.err.println("Error in serial I/O task: " + e.getMessage());
+            }
+        }
+    }
+
+    private static final class Task implements Comparable<Task> {
+        final Priority priority;
+        final long sequence;
+        final Runnable action;
+        final Runnable abort;
+
+        Task(Priority priority, long sequence, Runnable action, Runnable abort) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.action = action;
+            this.abort = abort;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
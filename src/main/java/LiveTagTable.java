@@ -0,0 +1,406 @@
+package main.java;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+
+import javafx.animation.AnimationTimer;
+import javafx.beans.property.LongProperty;
+import javafx.beans.property.SimpleLongProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableCell;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+
+/**
+ * Live table of the tags seen by all readers: first and last seen, read
+ * count, reader and whether the tag is still present.
+ *
+ * Reads and presence events arrive on the readers' I/O threads and are
+ * aggregated there per tag, in plain fields under one lock; a tag touched
+ * since the last refresh goes on a dirty list once. At most once per
+ * refresh interval the FX thread takes a bounded batch off the dirty list,
+ * copies the values into the rows' properties and adds new rows in a
+ * single list change, so the table sees one update per tag per refresh no
+ * matter how often the tag is read. The TableView only creates cells for
+ * the visible rows, so tens of thousands of rows cost no more to display
+ * than a screenful. Beyond the row limit the tags that have been gone the
+ * longest are dropped.
+ *
+ * With an {@link AssetCache} set, new rows are resolved to their asset in
+ * the background and the Asset column is filled in on a later refresh.
+ */
+public class LiveTagTable {
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+
+    private final Label summaryLabel;
+    private final ObservableList<Row> rows = FXCollections.observableArrayList();
+    private final long refreshNanos;
+    private final int maxRows;
+    private final int maxUpdatesPerRefresh;
+    private final AnimationTimer refresher;
+    private long lastRefreshNanos;
+    private volatile AssetCache assets;
+    // Rows whose asset arrived from the loader thread
+    private final Queue<Row> resolved = new ConcurrentLinkedQueue<>();
+
+    // Aggregated on the I/O threads, guarded by this
+    private final Map<String, Aggregate> aggregates = new HashMap<>();
+    private final List<Aggregate> dirty = new ArrayList<>();
+    private int presentCount;
+
+    // Values copied out under the lock, applied to the rows outside it (FX thread only)
+    private Aggregate[] batchTags = new Aggregate[0];
+    private long[] batchReads = new long[0];
+    private long[] batchFirstSeen = new long[0];
+    private long[] batchLastSeen = new long[0];
+    private String[] batchReaders = new String[0];
+    private boolean[] batchPresent = new boolean[0];
+
+    public LiveTagTable(TableView<Row> table, Label summaryLabel) {
+        this.summaryLabel = summaryLabel;
+        this.refreshNanos = Long.parseLong(AppConfig.properties.getProperty("tags.table.refresh.ms", "100")) * 1_000_000L;
+        this.maxRows = Integer.parseInt(AppConfig.properties.getProperty("tags.table.max.rows", "20000"));
+        this.maxUpdatesPerRefresh = Integer.parseInt(AppConfig.properties.getProperty("tags.table.batch", "2000"));
+
+        table.getColumns().setAll(Arrays.asList(
+                textColumn("Tag ID", 170, row -> row.tagId),
+                textColumn("Asset", 160, row -> row.asset),
+                textColumn("Reader", 80, row -> row.reader),
+                timeColumn("First Seen", row -> row.firstSeen),
+                timeColumn("Last Seen", row -> row.lastSeen),
+                countColumn("Reads", row -> row.reads),
+                textColumn("Status", 70, row -> row.status)));
+        table.setItems(rows);
+        table.setPlaceholder(new Label("No tags detected yet"));
+
+        refresher = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                if (now - lastRefreshNanos >= refreshNanos) {
+                    lastRefreshNanos = now;
+                    refresh();
+                }
+            }
+        };
+        refresher.start();
+    }
+
+    /**
+     * Resolve the rows added from now on to assets
+     */
+    public void setAssetCache(AssetCache assets) {
+        this.assets = assets;
+    }
+
+    /**
+     * Count one read of the tag; called for every read, on the reader's I/O thread
+     */
+    public void onRead(String reader, String tagId) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Aggregate tag = aggregates.get(tagId);
+            if (tag == null) {
+                tag = new Aggregate(tagId, now);
+                aggregates.put(tagId, tag);
+            }
+            tag.reads++;
+            tag.lastSeen = now;
+            tag.reader = reader;
+            if (!tag.present) {
+                tag.present = true;
+                presentCount++;
+            }
+            markDirty(tag);
+        }
+    }
+
+    /**
+     * Mark tags gone on EXIT; the other events are covered by {@link #onRead}
+     */
+    public void onTagEvent(TagEvent event) {
+        if (event.getType() != TagEvent.Type.EXIT) {
+            return;
+        }
+        synchronized (this) {
+            Aggregate tag = aggregates.get(event.getTagId());
+            // Still present if another reader has seen it since
+            if (tag != null && tag.present && event.getReader().equals(tag.reader)) {
+                tag.present = false;
+                presentCount--;
+                markDirty(tag);
+            }
+        }
+    }
+
+    /**
+     * Remove all rows; call on the FX thread
+     */
+    public void clear() {
+        synchronized (this) {
+            aggregates.clear();
+            dirty.clear();
+            presentCount = 0;
+        }
+        rows.clear();
+        updateSummary(0);
+    }
+
+    public void close() {
+        refresher.stop();
+    }
+
+    private void markDirty(Aggregate tag) {
+        if (!tag.dirty) {
+            tag.dirty = true;
+            dirty.add(tag);
+        }
+    }
+
+    /**
+     * Runs on the FX thread once per refresh interval
+     */
+    private void refresh() {
+        int count;
+        int present;
+        synchronized (this) {
+            if (dirty.isEmpty()) {
+                return;
+            }
+            count = Math.min(dirty.size(), maxUpdatesPerRefresh);
+            ensureBatchCapacity(count);
+            for (int i = 0; i < count; i++) {
+                Aggregate tag = dirty.get(i);
+                tag.dirty = false;
+                batchTags[i] = tag;
+                batchReads[i] = tag.reads;
+                batchFirstSeen[i] = tag.firstSeen;
+                batchLastSeen[i] = tag.lastSeen;
+                batchReaders[i] = tag.reader;
+                batchPresent[i] = tag.present;
+            }
+            // Whatever is left over goes out with the next refresh
+            dirty.subList(0, count).clear();
+            present = presentCount;
+        }
+
+        List<Row> added = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Aggregate tag = batchTags[i];
+            batchTags[i] = null;
+            if (tag.removed) {
+                continue;
+            }
+            Row row = tag.row;
+            if (row == null) {
+                row = new Row(tag);
+                tag.row = row;
+                added.add(row);
+                resolveAsset(row);
+            }
+            row.reads.set(batchReads[i]);
+            row.firstSeen.set(batchFirstSeen[i]);
+            row.lastSeen.set(batchLastSeen[i]);
+            row.reader.set(batchReaders[i]);
+            row.status.set(batchPresent[i] ? "Present" : "Gone");
+        }
+        if (!added.isEmpty()) {
+            rows.addAll(added);
+        }
+        applyResolvedAssets();
+        // Some slack, so the limit isn't enforced on every refresh
+        if (rows.size() > maxRows + maxRows / 10) {
+            evictGone();
+        }
+        updateSummary(present);
+    }
+
+    private void resolveAsset(Row row) {
+        AssetCache cache = assets;
+        if (cache == null) {
+            return;
+        }
+        CompletableFuture<Asset> asset = cache.lookup(row.getTagId());
+        if (asset.isDone()) {
+            row.setAsset(asset.getNow(null));
+        } else {
+            asset.thenAccept(loaded -> {
+                if (loaded != null) {
+                    row.resolvedAsset = loaded;
+                    resolved.add(row);
+                }
+            });
+        }
+    }
+
+    private void applyResolvedAssets() {
+        Row row;
+        while ((row = resolved.poll()) != null) {
+            row.setAsset(row.resolvedAsset);
+        }
+    }
+
+    /**
+     * Drop the tags gone the longest until the table is back at its limit
+     */
+    private void evictGone() {
+        List<Row> gone = new ArrayList<>();
+        for (Row row : rows) {
+            if (!row.aggregate.present) {
+                gone.add(row);
+            }
+        }
+        gone.sort(Comparator.comparingLong(row -> row.lastSeen.get()));
+
+        Set<Row> evicted = new HashSet<>();
+        int excess = rows.size() - maxRows;
+        synchronized (this) {
+            for (Row row : gone) {
+                if (evicted.size() >= excess) {
+                    break;
+                }
+                Aggregate tag = row.aggregate;
+                // Read again since the copy above; it stays
+                if (tag.present || tag.dirty) {
+                    continue;
+                }
+                aggregates.remove(tag.tagId);
+                tag.removed = true;
+                evicted.add(row);
+            }
+        }
+        rows.removeAll(evicted);
+    }
+
+    private void updateSummary(int present) {
+        if (summaryLabel != null) {
+            summaryLabel.setText(rows.size() + " tags, " + present + " present");
+        }
+    }
+
+    private void ensureBatchCapacity(int count) {
+        if (batchTags.length >= count) {
+            return;
+        }
+        batchTags = new Aggregate[count];
+        batchReads = new long[count];
+        batchFirstSeen = new long[count];
+        batchLastSeen = new long[count];
+        batchReaders = new String[count];
+        batchPresent = new boolean[count];
+    }
+
+    private static TableColumn<Row, String> textColumn(String title, double width,
+                                                       Function<Row, StringProperty> property) {
+        TableColumn<Row, String> column = new TableColumn<>(title);
+        column.setPrefWidth(width);
+        column.setCellValueFactory(cell -> property.apply(cell.getValue()));
+        return column;
+    }
+
+    private static TableColumn<Row, Number> countColumn(String title,
+                                                        Function<Row, LongProperty> property) {
+        TableColumn<Row, Number> column = new TableColumn<>(title);
+        column.setPrefWidth(60);
+        column.setCellValueFactory(cell -> property.apply(cell.getValue()));
+        return column;
+    }
+
+    private static TableColumn<Row, Number> timeColumn(String title,
+                                                       Function<Row, LongProperty> property) {
+        TableColumn<Row, Number> column = countColumn(title, property);
+        column.setPrefWidth(80);
+        column.setCellFactory(ignored -> new TableCell<Row, Number>() {
+            @Override
+            protected void updateItem(Number millis, boolean empty) {
+                super.updateItem(millis, empty);
+                setText(empty || millis == null ? null
+                        : TIME_FORMAT.format(Instant.ofEpochMilli(millis.longValue()).atZone(ZONE)));
+            }
+        });
+        return column;
+    }
+
+    /**
+     * Per-tag totals as seen by the I/O threads
+     */
+    private static final class Aggregate {
+        final String tagId;
+        final long firstSeen;
+        long lastSeen;
+        long reads;
+        String reader;
+        boolean present;
+        boolean dirty;
+        // FX thread only
+        Row row;
+        boolean removed;
+
+        Aggregate(String tagId, long firstSeen) {
+            this.tagId = tagId;
+            this.firstSeen = firstSeen;
+        }
+    }
+
+    /**
+     * One table row; its properties are only touched on the FX thread
+     */
+    public static final class Row {
+        private final Aggregate aggregate;
+        private final StringProperty tagId;
+        private final StringProperty reader = new SimpleStringProperty();
+        private final LongProperty firstSeen = new SimpleLongProperty();
+        private final LongProperty lastSeen = new SimpleLongProperty();
+        private final LongProperty reads = new SimpleLongProperty();
+        private final StringProperty status = new SimpleStringProperty();
+        private final StringProperty asset = new SimpleStringProperty("");
+        // Handed over from the loader thread through the resolved queue
+        private volatile Asset resolvedAsset;
+
+        private Row(Aggregate aggregate) {
+            this.aggregate = aggregate;
+            this.tagId = new SimpleStringProperty(aggregate.tagId);
+        }
+
+        public String getTagId() {
+            return tagId.get();
+        }
+
+        public String getReader() {
+            return reader.get();
+        }
+
+        public long getReads() {
+            return reads.get();
+        }
+
+        public boolean isPresent() {
+            return "Present".equals(status.get());
+        }
+
+        public String getAsset() {
+            return asset.get();
+        }
+
+        private void setAsset(Asset value) {
+            asset.set(value != null ? value.describe() : "");
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package main.java;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.control.TextArea;
+
+/**
+ * Activity log behind the panel's log area.
+ *
+ * Entries can be appended from any thread into a fixed-capacity ring buffer
+ * (the oldest entries are dropped when it is full). Once per JavaFX pulse
+ * the pending entries are appended to the TextArea in a single call, and
+ * the area is trimmed to a fixed number of visible lines. Every entry is
+ * also handed to a background thread that writes a rolling log file.
+ */
+public class LogSink {
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+    private static final DateTimeFormatter FILE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    private static final int FILE_BATCH_SIZE = 512;
+
+    private final TextArea logArea;
+    private final int maxVisibleLines;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    // Ring buffer of entries waiting for the next UI flush
+    private final String[] messages;
+    private final long[] times;
+    private int head;
+    private int count;
+    private long dropped;
+
+    private final ArrayDeque<Integer> visibleLineLengths = new ArrayDeque<>();
+    private final StringBuilder batch = new StringBuilder();
+    private long cachedSecond = -1;
+    private String cachedTime = "";
+    private final AnimationTimer flusher;
+
+    // Write-through to the rolling file
+    private final BlockingQueue<String> fileQueue;
+    private final File logDir;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final Thread fileWriter;
+    private volatile boolean running = true;
+
+    public LogSink(TextArea logArea) {
+        this.logArea = logArea;
+        this.maxVisibleLines = Integer.parseInt(AppConfig.properties.getProperty("log.visible.lines", "1000"));
+        int capacity = Integer.parseInt(AppConfig.properties.getProperty("log.buffer.capacity", "4096"));
+        this.messages = new String[capacity];
+        this.times = new long[capacity];
+
+        this.fileQueue = new ArrayBlockingQueue<>(capacity);
+        this.logDir = new File(AppConfig.properties.getProperty("log.file.dir", "logs"));
+        this.maxFileBytes = Long.parseLong(AppConfig.properties.getProperty("log.file.max.bytes", "5242880"));
+        this.maxFiles = Integer.parseInt(AppConfig.properties.getProperty("log.file.count", "5"));
+
+        flusher = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                flush();
+            }
+        };
+        flusher.start();
+
+        fileWriter = new Thread(this::writeFiles, "rfid-log-writer");
+        fileWriter.setDaemon(true);
+        fileWriter.start();
+    }
+
+    /**
+     * Add a log entry; safe to call from any thread and never blocks
+     */
+    public void append(String message) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            if (count == messages.length) {
+                head = (head + 1) % messages.length;
+                count--;
+                dropped++;
+            }
+            int tail = (head + count) % messages.length;
+            messages[tail] = message;
+            times[tail] = now;
+            count++;
+        }
+
+        // The file is best effort; a stalled disk must not back up the callers
+        fileQueue.offer(FILE_TIME_FORMAT.format(Instant.ofEpochMilli(now).atZone(zone)) + " " + message);
+    }
+
+    /**
+     * Clear the visible history (entries still reach the log file)
+     */
+    public void clearVisible() {
+        synchronized (this) {
+            head = 0;
+            count = 0;
+            dropped = 0;
+        }
+        visibleLineLengths.clear();
+        logArea.clear();
+    }
+
+    /**
+     * Runs on the FX thread once per pulse
+     */
+    private void flush() {
+        int newLines = 0;
+        synchronized (this) {
+            if (count == 0) {
+                return;
+            }
+            batch.setLength(0);
+            if (dropped > 0) {
+                appendLine(System.currentTimeMillis(), "... " + dropped + " log entries skipped");
+                newLines++;
+                dropped = 0;
+            }
+            for (int i = 0; i < count; i++) {
+                int index = (head + i) % messages.length;
+                appendLine(times[index], messages[index]);
+                newLines++;
+                messages[index] = null;
+            }
+            head = 0;
+            count = 0;
+        }
+
+        // Drop the oldest lines beyond the cap, from the area and then from this batch
+        int existingLines = visibleLineLengths.size() - newLines;
+        int excess = visibleLineLengths.size() - maxVisibleLines;
+        int trimChars = 0;
+        int batchTrim = 0;
+        for (int i = 0; i < excess; i++) {
+            int length = visibleLineLengths.removeFirst();
+            if (i < existingLines) {
+                trimChars += length;
+            } else {
+                batchTrim += length;
+            }
+        }
+        if (trimChars > 0) {
+            logArea.deleteText(0, Math.min(trimChars, logArea.getLength()));
+        }
+        logArea.appendText(batchTrim > 0 ? batch.substring(batchTrim) : batch.toString());
+        logArea.setScrollTop(Double.MAX_VALUE);
+    }
+
+    private void appendLine(long millis, String message) {
+        int start = batch.length();
+        batch.append('[').append(timeOf(millis)).append("] ").append(message).append('\n');
+        visibleLineLengths.add(batch.length() - start);
+    }
+
+    private String timeOf(long millis) {
+        long second = millis / 1000;
+        if (second != cachedSecond) {
+            cachedSecond = second;
+            cachedTime = TIME_FORMAT.format(Instant.ofEpochMilli(millis).atZone(zone));
+        }
+        return cachedTime;
+    }
+
+    private void writeFiles() {
+        List<String> lines = new ArrayList<>(FILE_BATCH_SIZE);
+        BufferedWriter writer = null;
+        File current = new File(logDir, "rfid.log");
+        try {
+            if (!logDir.isDirectory() && !logDir.mkdirs()) {
+                System.err.println("Cannot create log directory: " + logDir.getAbsolutePath());
+                return;
+            }
+            writer = open(current);
+
+            while (running || !fileQueue.isEmpty()) {
+                String first = fileQueue.poll(500, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                lines.add(first);
+                fileQueue.drainTo(lines, FILE_BATCH_SIZE - 1);
+                for (String line : lines) {
+                    writer.write(line);
+                    writer.newLine();
+                }
+                writer.flush();
+                lines.clear();
+
+                if (current.length() >= maxFileBytes) {
+                    writer.close();
+                    roll(current);
+                    writer = open(current);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.err.println("Log file writer stopped: " + e.getMessage());
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing log file: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static BufferedWriter open(File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * rfid.log becomes rfid.log.1, rfid.log.1 becomes rfid.log.2, ... and the oldest is deleted;
+     * with a single file, rfid.log itself is deleted and started afresh
+     */
+    private void roll(File current) {
+        if (maxFiles <= 1) {
+            if (!current.delete()) {
+                System.err.println("Cannot delete full log file: " + current);
+            }
+            return;
+        }
+        File oldest = new File(current.getPath() + "." + (maxFiles - 1));
+        if (oldest.exists() && !oldest.delete()) {
+            System.err.println("Cannot delete old log file: " + oldest);
+        }
+        for (int i = maxFiles - 2; i >= 1; i--) {
+            File from = new File(current.getPath() + "." + i);
+            if (from.exists() && !from.renameTo(new File(current.getPath() + "." + (i + 1)))) {
+                System.err.println("Cannot roll log file: " + from);
+            }
+        }
+        if (!current.renameTo(new File(current.getPath() + ".1"))) {
+            System.err.println("Cannot roll log file: " + current);
+        }
+    }
+
+    public void close() {
+        flusher.stop();
+        running = false;
+        try {
+            fileWriter.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,37 +1,54 @@
 package main.java;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.util.Properties;
-
+import javafx.animation.AnimationTimer;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
 public class MainApp extends Application {
-	 final private static String PROPERTIES_FILE_PATH = "datasource.properties";
-	 public static Properties properties = null;
+	 // Reference point for start-up timings (time-to-first-frame, time-to-ready)
+	 private static final long LAUNCH_NANOS = System.nanoTime();
+	 
+	 private RFIDController controller;
 	 
 	    
     @Override
     public void start(Stage primaryStage) throws Exception {
         FXMLLoader loader = new FXMLLoader(getClass().getResource("/layout.fxml"));
         Scene scene = new Scene(loader.load(), 600, 400);
+        controller = loader.getController();
         primaryStage.setTitle("RFID Panel");
         primaryStage.setScene(scene);
         primaryStage.show();
+        
+        // Log when the first frame is actually rendered
+        new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                stop();
+                System.out.println("Time to first frame: " + millisSinceLaunch() + " ms");
+            }
+        }.start();
+    }
+
+    /**
+     * Called by JavaFX when the window closes: release the readers and flush
+     * the queue, journal, exports and log before the JVM exits
+     */
+    @Override
+    public void stop() {
+        if (controller != null) {
+            controller.cleanup();
+        }
+    }
+
+    public static long millisSinceLaunch() {
+        return (System.nanoTime() - LAUNCH_NANOS) / 1000000L;
     }
 
     public static void main(String[] args) {
-    	properties = new Properties();
-    	InputStream inputStream = MainApp.class.getClassLoader().getResourceAsStream(PROPERTIES_FILE_PATH);
-    	try {
-			properties.load(inputStream);
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
+    	AppConfig.load();
         launch(args);
     }
 }
@@ -0,0 +1,546 @@
+package main.java;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javafx.application.Platform;
+import javafx.scene.control.Label;
+import javafx.scene.control.TextArea;
+
+/**
+ * Micro-benchmarks for the reader hot paths, run against an in-memory
+ * reader instead of a serial port:
+ *
+ *   decode   - FrameDecoder reassembling fragmented frames
+ *   binary   - BinaryCodec parsing fragmented 16-tag inventory reports
+ *   readTag  - a frame through the receive path to SerialService.readTag()
+ *   command  - sendCommand() round trip through the I/O thread
+ *   dedup    - TagInventory.onRead() over a tag population
+ *   dispatch - a new tag's frame to its ENTER event on the listeners
+ *   log      - LogSink.append() as used by RFIDController.appendLog
+ *   status   - Platform.runLater() round trip for a status label update
+ *
+ * The last two need the JavaFX toolkit and are skipped when it cannot start.
+ * For each benchmark the throughput, the p50/p99 latency of one operation
+ * and the bytes allocated per operation (all threads) are printed.
+ *
+ * Usage: PipelineBenchmark [-ops n] [-warmup n] [-out results.csv]
+ *                          [-baseline results.csv] [-tolerance percent] [name ...]
+ * With -baseline the run exits with status 1 if any benchmark's throughput
+ * fell, or its allocation rose, by more than the tolerance (default 10%).
+ */
+public class PipelineBenchmark {
+    private static final String[] ALL = {"decode", "binary", "readTag", "command", "dedup", "dispatch", "log", "status"};
+    private static final int POPULATION = 1000;
+
+    private final int ops;
+    private final int warmup;
+    private final String[] tagIds = new String[POPULATION];
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    public PipelineBenchmark(int ops, int warmup) {
+        this.ops = ops;
+        this.warmup = warmup;
+        for (int i = 0; i < POPULATION; i++) {
+            tagIds[i] = String.format("E2003412%016X", 0x1000L + i);
+        }
+    }
+
+    /**
+     * One benchmarked operation
+     */
+    private interface Op {
+        void run(int i) throws Exception;
+    }
+
+    /**
+     * Measured numbers for one benchmark
+     */
+    public static class Result {
+        final String name;
+        final double opsPerSecond;
+        final double p50Micros;
+        final double p99Micros;
+        final double bytesPerOp;
+
+        Result(String name, double opsPerSecond, double p50Micros, double p99Micros, double bytesPerOp) {
+            this.name = name;
+            this.opsPerSecond = opsPerSecond;
+            this.p50Micros = p50Micros;
+            this.p99Micros = p99Micros;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-10s %12.0f %10.2f %10.2f %10.1f",
+                    name, opsPerSecond, p50Micros, p99Micros, bytesPerOp);
+        }
+    }
+
+    private Result measure(String name, Op op) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            op.run(i);
+        }
+
+        long[] latencies = new long[ops];
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ops; i++) {
+            long t0 = System.nanoTime();
+            op.run(warmup + i);
+            latencies[i] = System.nanoTime() - t0;
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        Arrays.sort(latencies);
+        return new Result(name,
+                ops / (elapsed / 1e9),
+                latencies[ops / 2] / 1e3,
+                latencies[(int) (ops * 0.99)] / 1e3,
+                allocated < 0 ? Double.NaN : (double) allocated / ops);
+    }
+
+    /**
+     * Bytes allocated so far by all live threads, or -1 if the JVM can't tell
+     */
+    private long allocatedBytes() {
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+        if (!hotspot.isThreadAllocatedMemorySupported() || !hotspot.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        long total = 0;
+        for (long bytes : hotspot.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (bytes > 0) {
+                total += bytes;
+            }
+        }
+        return total;
+    }
+
+    public Result run(String name) throws Exception {
+        switch (name) {
+            case "decode":
+                return decode();
+            case "binary":
+                return binary();
+            case "readTag":
+                return readTag();
+            case "command":
+                return command();
+            case "dedup":
+                return dedup();
+            case "dispatch":
+                return dispatch();
+            case "log":
+                return log();
+            case "status":
+                return status();
+            default:
+                throw new IllegalArgumentException("Unknown benchmark: " + name);
+        }
+    }
+
+    private Result decode() throws Exception {
+        FrameDecoder decoder = new FrameDecoder(FrameDecoder.Mode.DELIMITED, 1024);
+        byte[] frame = new byte[256];
+        Random random = new Random(42);
+        byte[][] lines = new byte[POPULATION][];
+        int[] cuts = new int[POPULATION];
+        for (int i = 0; i < POPULATION; i++) {
+            lines[i] = (tagIds[i] + "\r\n").getBytes();
+            // Split every frame in two at a random point, as a slow UART would
+            cuts[i] = 1 + random.nextInt(lines[i].length - 1);
+        }
+
+        return measure("decode", i -> {
+            byte[] line = lines[i % POPULATION];
+            int cut = cuts[i % POPULATION];
+            decoder.write(line, 0, cut);
+            decoder.write(line, cut, line.length - cut);
+            if (decoder.nextFrame(frame) < 0) {
+                throw new IllegalStateException("Frame not decoded");
+            }
+        });
+    }
+
+    private Result binary() throws Exception {
+        final int tagsPerReport = 16;
+        BinaryCodec codec = new BinaryCodec(1024);
+        Random random = new Random(42);
+        byte[][] reports = new byte[POPULATION / tagsPerReport][];
+        int[] cuts = new int[reports.length];
+        for (int i = 0; i < reports.length; i++) {
+            byte[] data = new byte[1 + tagsPerReport * 14];
+            int p = 0;
+            data[p++] = (byte) tagsPerReport;
+            for (int t = 0; t < tagsPerReport; t++) {
+                String id = tagIds[i * tagsPerReport + t];
+                data[p++] = (byte) 0xC8;
+                data[p++] = 12;
+                for (int b = 0; b < 12; b++) {
+                    data[p++] = (byte) Integer.parseInt(id.substring(2 * b, 2 * b + 2), 16);
+                }
+            }
+            reports[i] = BinaryCodec.frame(BinaryCodec.CMD_INVENTORY, data, 0, p);
+            cuts[i] = 1 + random.nextInt(reports[i].length - 1);
+        }
+        int[] tags = new int[1];
+        ProtocolCodec.Listener listener = new ProtocolCodec.Listener() {
+            @Override
+            public void onFrame(String frame) {
+            }
+
+            @Override
+            public void onReply(String keyword, String body) {
+            }
+
+            @Override
+            public void onTag(String tagId) {
+                tags[0]++;
+            }
+
+            @Override
+            public void onDecodeError(String reason) {
+                throw new IllegalStateException(reason);
+            }
+        };
+
+        return measure("binary", i -> {
+            byte[] report = reports[i % reports.length];
+            int cut = cuts[i % reports.length];
+            codec.receive(report, 0, cut);
+            codec.receive(report, cut, report.length - cut);
+            tags[0] = 0;
+            if (!codec.decodeNext(listener) || tags[0] != tagsPerReport) {
+                throw new IllegalStateException("Report not decoded");
+            }
+        });
+    }
+
+    private Result readTag() throws Exception {
+        LoopbackTransport transport = new LoopbackTransport("BENCH");
+        SerialService service = new SerialService(transport);
+        service.open();
+        try {
+            return measure("readTag", i -> {
+                transport.inject(tagIds[i % POPULATION]);
+                if ("NO TAG".equals(service.readTag())) {
+                    throw new IllegalStateException("Tag not read");
+                }
+            });
+        } finally {
+            service.closePort();
+        }
+    }
+
+    private Result command() throws Exception {
+        LoopbackTransport transport = new LoopbackTransport("BENCH");
+        SerialService service = new SerialService(transport);
+        service.open();
+        try {
+            return measure("command", i -> {
+                if (!service.sendCommand("STATUS\r\n").startsWith("STATUS:OK")) {
+                    throw new IllegalStateException("No reply to STATUS");
+                }
+            });
+        } finally {
+            service.closePort();
+        }
+    }
+
+    private Result dedup() throws Exception {
+        TagInventory inventory = new TagInventory("BENCH", 0, 500);
+        return measure("dedup", i -> inventory.onRead(tagIds[i % POPULATION], i / 1000));
+    }
+
+    private Result dispatch() throws Exception {
+        LoopbackTransport transport = new LoopbackTransport("BENCH");
+        SerialService service = new SerialService(transport);
+        AtomicLong entered = new AtomicLong();
+        service.addTagEventListener(event -> {
+            if (event.getType() == TagEvent.Type.ENTER) {
+                entered.incrementAndGet();
+            }
+        });
+        service.open();
+        service.startAutoDetection(tag -> { });
+        try {
+            // Every frame carries a tag not seen before, so each one is an ENTER
+            return measure("dispatch", i -> {
+                long expected = entered.get() + 1;
+                transport.inject(String.format("E2009999%016X", (long) i));
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+                while (entered.get() < expected) {
+                    if (System.nanoTime() > deadline) {
+                        throw new IllegalStateException("Tag event not delivered");
+                    }
+                    Thread.yield();
+                }
+            });
+        } finally {
+            service.stopAutoDetection();
+            service.closePort();
+        }
+    }
+
+    private Result log() throws Exception {
+        if (!startToolkit()) {
+            return null;
+        }
+        LogSink[] sink = new LogSink[1];
+        runOnFxThread(() -> sink[0] = new LogSink(new TextArea()));
+        try {
+            return measure("log", i -> sink[0].append("Auto-detected tag: " + tagIds[i % POPULATION]));
+        } finally {
+            runOnFxThread(() -> sink[0].close());
+        }
+    }
+
+    private Result status() throws Exception {
+        if (!startToolkit()) {
+            return null;
+        }
+        Label label = new Label();
+        return measure("status", i -> runOnFxThread(() -> label.setText("Tag detected: " + tagIds[i % POPULATION])));
+    }
+
+    private static boolean toolkitStarted;
+
+    private static synchronized boolean startToolkit() {
+        if (!toolkitStarted) {
+            try {
+                CountDownLatch started = new CountDownLatch(1);
+                Platform.startup(started::countDown);
+                started.await();
+                toolkitStarted = true;
+            } catch (Throwable e) {
+                System.err.println("JavaFX toolkit not available, UI benchmarks skipped: " + e);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void runOnFxThread(Runnable action) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        Platform.runLater(() -> {
+            try {
+                action.run();
+            } finally {
+                done.countDown();
+            }
+        });
+        done.await();
+    }
+
+    /**
+     * In-memory reader: frames are injected by the benchmark, and STATUS and
+     * SET_* commands are answered on the writing thread
+     */
+    static class LoopbackTransport implements Transport {
+        private final String name;
+        private final byte[] rx = new byte[1 << 16];
+        private int rxHead;
+        private int rxCount;
+        private volatile Runnable listener;
+        private volatile boolean open;
+
+        LoopbackTransport(String name) {
+            this.name = name;
+        }
+
+        void inject(String frame) {
+            byte[] bytes = (frame + "\r\n").getBytes();
+            synchronized (this) {
+                for (byte b : bytes) {
+                    rx[(rxHead + rxCount++) & (rx.length - 1)] = b;
+                }
+            }
+            Runnable onData = listener;
+            if (onData != null) {
+                onData.run();
+            }
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public boolean open() {
+            open = true;
+            return true;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+
+        @Override
+        public synchronized int bytesAvailable() {
+            return rxCount;
+        }
+
+        @Override
+        public synchronized int read(byte[] buffer, int offset, int length) {
+            int n = Math.min(length, rxCount);
+            for (int i = 0; i < n; i++) {
+                buffer[offset + i] = rx[(rxHead + i) & (rx.length - 1)];
+            }
+            rxHead = (rxHead + n) & (rx.length - 1);
+            rxCount -= n;
+            return n;
+        }
+
+        @Override
+        public int write(byte[] data, int length) {
+            String command = new String(data, 0, length).trim();
+            inject(command.startsWith("STATUS") ? "STATUS:OK BENCH" : "OK");
+            return length;
+        }
+
+        @Override
+        public boolean setDataListener(Runnable onDataAvailable) {
+            this.listener = onDataAvailable;
+            return true;
+        }
+    }
+
+    private static Map<String, Result> readResults(File file) throws IOException {
+        Map<String, Result> results = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(",");
+                if (fields.length == 5 && !fields[0].equals("benchmark")) {
+                    results.put(fields[0], new Result(fields[0], Double.parseDouble(fields[1]),
+                            Double.parseDouble(fields[2]), Double.parseDouble(fields[3]),
+                            Double.parseDouble(fields[4])));
+                }
+            }
+        }
+        return results;
+    }
+
+    private static void writeResults(File file, List<Result> results) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+            writer.println("benchmark,ops_per_sec,p50_us,p99_us,bytes_per_op");
+            for (Result r : results) {
+                writer.printf("%s,%.1f,%.3f,%.3f,%.1f%n", r.name, r.opsPerSecond, r.p50Micros, r.p99Micros, r.bytesPerOp);
+            }
+        }
+    }
+
+    /**
+     * @return the regressions found, one message each
+     */
+    private static List<String> compare(List<Result> results, Map<String, Result> baseline, double tolerance) {
+        List<String> regressions = new ArrayList<>();
+        for (Result r : results) {
+            Result base = baseline.get(r.name);
+            if (base == null) {
+                continue;
+            }
+            if (r.opsPerSecond < base.opsPerSecond * (1 - tolerance)) {
+                regressions.add(String.format("%s: %.0f ops/s, baseline %.0f", r.name, r.opsPerSecond, base.opsPerSecond));
+            }
+            // Allow a few bytes of noise on paths that allocate next to nothing
+            if (r.bytesPerOp > base.bytesPerOp * (1 + tolerance) + 8) {
+                regressions.add(String.format("%s: %.1f B/op, baseline %.1f", r.name, r.bytesPerOp, base.bytesPerOp));
+            }
+        }
+        return regressions;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int ops = 200000;
+        int warmup = 50000;
+        File out = null;
+        File baseline = null;
+        double tolerance = 0.10;
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-ops":
+                    ops = Integer.parseInt(args[++i]);
+                    break;
+                case "-warmup":
+                    warmup = Integer.parseInt(args[++i]);
+                    break;
+                case "-out":
+                    out = new File(args[++i]);
+                    break;
+                case "-baseline":
+                    baseline = new File(args[++i]);
+                    break;
+                case "-tolerance":
+                    tolerance = Double.parseDouble(args[++i]) / 100;
+                    break;
+                default:
+                    names.add(args[i]);
+            }
+        }
+        if (names.isEmpty()) {
+            names.addAll(Arrays.asList(ALL));
+        }
+
+        AppConfig.load();
+        AppConfig.properties.setProperty("rfid.config.cache", "false");
+        // The loopback reader speaks the ASCII protocol
+        AppConfig.properties.setProperty("rfid.protocol", "ascii");
+        PipelineBenchmark benchmark = new PipelineBenchmark(ops, warmup);
+        List<Result> results = new ArrayList<>();
+        System.out.println(String.format("%-10s %12s %10s %10s %10s", "benchmark", "ops/s", "p50 us", "p99 us", "B/op"));
+        for (String name : names) {
+            Result result = benchmark.run(name);
+            if (result != null) {
+                System.out.println(result);
+                results.add(result);
+            }
+        }
+
+        if (out != null) {
+            writeResults(out, results);
+        }
+        int status = 0;
+        if (baseline != null) {
+            List<String> regressions = compare(results, readResults(baseline), tolerance);
+            for (String regression : regressions) {
+                System.err.println("REGRESSION " + regression);
+            }
+            status = regressions.isEmpty() ? 0 : 1;
+        }
+        if (toolkitStarted) {
+            Platform.exit();
+        }
+        System.exit(status);
+    }
+
+}
@@ -0,0 +1,194 @@
+package main.java;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Rolling presence figures across all readers, fed with their tag events:
+ * tags entering per minute, mean dwell time of the tags that left, zone
+ * transitions per minute and the number of tags present.
+ *
+ * Every reader covers one zone, named by "zone.&lt;port&gt;" (default: the
+ * port). A tag that enters a zone while still present in another has moved
+ * between them; the move is counted and passed to the transition
+ * listeners. Since a tag leaves a zone only a TTL after its last read
+ * there, a tag carried from one reader to the next is still present in
+ * the first when the second sees it.
+ *
+ * The window is a ring of one-second buckets. The window totals are
+ * updated as events come in and as buckets drop out, so reading the
+ * figures never walks the events.
+ */
+public class PresenceAnalytics {
+
+    public interface TransitionListener {
+        void onTransition(String tagId, String fromZone, String toZone, long timestamp);
+    }
+
+    private final int windowSeconds;
+    private final long[] enters;
+    private final long[] exits;
+    private final long[] dwellMillis;
+    private final long[] transitions;
+    private long newestSecond;
+
+    private long windowEnters;
+    private long windowExits;
+    private long windowDwellMillis;
+    private long windowTransitions;
+    private int present;
+
+    // Zone each present tag entered last
+    private final Map<String, String> zoneOf = new HashMap<>();
+    private final Map<String, String> zoneNames = new ConcurrentHashMap<>();
+    private final List<TransitionListener> listeners = new CopyOnWriteArrayList<>();
+
+    public PresenceAnalytics(int windowSeconds) {
+        this.windowSeconds = Math.max(1, windowSeconds);
+        this.enters = new long[this.windowSeconds];
+        this.exits = new long[this.windowSeconds];
+        this.dwellMillis = new long[this.windowSeconds];
+        this.transitions = new long[this.windowSeconds];
+        this.newestSecond = System.currentTimeMillis() / 1000;
+    }
+
+    /**
+     * Window from "analytics.window.s" (default 60)
+     */
+    public static PresenceAnalytics fromProperties() {
+        return new PresenceAnalytics(Integer.parseInt(AppConfig.properties.getProperty("analytics.window.s", "60")));
+    }
+
+    public void addTransitionListener(TransitionListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Called on the readers' I/O threads; cheap and never blocks for long
+     */
+    public void onTagEvent(TagEvent event) {
+        String zone = zoneOf(event.getReader());
+        String from = null;
+        synchronized (this) {
+            int bucket = bucket(event.getTimestamp());
+            switch (event.getType()) {
+                case ENTER:
+                    enters[bucket]++;
+                    windowEnters++;
+                    present++;
+                    from = zoneOf.put(event.getTagId(), zone);
+                    if (from != null && !from.equals(zone)) {
+                        transitions[bucket]++;
+                        windowTransitions++;
+                    } else {
+                        from = null;
+                    }
+                    break;
+                case EXIT:
+                    exits[bucket]++;
+                    windowExits++;
+                    dwellMillis[bucket] += event.getDwellMillis();
+                    windowDwellMillis += event.getDwellMillis();
+                    present = Math.max(0, present - 1);
+                    // Still in the zone it entered last if it only left an earlier one
+                    zoneOf.remove(event.getTagId(), zone);
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (from != null) {
+            for (TransitionListener listener : listeners) {
+                try {
+                    listener.onTransition(event.getTagId(), from, zone, event.getTimestamp());
+                } catch (Exception e) {
+                    System.err.println("Error in zone transition listener: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Forget the present tags, e.g. when auto-detection stops and the
+     * readers drop their inventories without EXIT events
+     */
+    public synchronized void reset() {
+        zoneOf.clear();
+        present = 0;
+    }
+
+    public synchronized double getTagsPerMinute() {
+        roll(System.currentTimeMillis() / 1000);
+        return windowEnters * 60.0 / windowSeconds;
+    }
+
+    public synchronized double getTransitionsPerMinute() {
+        roll(System.currentTimeMillis() / 1000);
+        return windowTransitions * 60.0 / windowSeconds;
+    }
+
+    /**
+     * Mean dwell of the tags that left within the window, 0 if none did
+     */
+    public synchronized double getMeanDwellMillis() {
+        roll(System.currentTimeMillis() / 1000);
+        return windowExits == 0 ? 0.0 : (double) windowDwellMillis / windowExits;
+    }
+
+    public synchronized int getPresent() {
+        return present;
+    }
+
+    public int getWindowSeconds() {
+        return windowSeconds;
+    }
+
+    /**
+     * One line for the panel and the log
+     */
+    public String summary() {
+        return String.format("%d present, %.0f tags/min, mean dwell %.1f s, %.0f zone moves/min",
+                getPresent(), getTagsPerMinute(), getMeanDwellMillis() / 1000.0, getTransitionsPerMinute());
+    }
+
+    private String zoneOf(String reader) {
+        return zoneNames.computeIfAbsent(reader,
+                port -> AppConfig.properties.getProperty("zone." + port, port).trim());
+    }
+
+    /**
+     * Bucket for an event time, moving the window forward if needed;
+     * events older than the window count in the oldest bucket
+     */
+    private int bucket(long timestamp) {
+        long second = timestamp / 1000;
+        roll(second);
+        second = Math.max(second, newestSecond - windowSeconds + 1);
+        return (int) Math.floorMod(Math.min(second, newestSecond), (long) windowSeconds);
+    }
+
+    /**
+     * Drop the buckets that fall out of the window when it ends at the given second
+     */
+    private void roll(long second) {
+        if (second <= newestSecond) {
+            return;
+        }
+        long steps = Math.min(second - newestSecond, windowSeconds);
+        for (long s = second - steps + 1; s <= second; s++) {
+            int i = (int) Math.floorMod(s, (long) windowSeconds);
+            windowEnters -= enters[i];
+            windowExits -= exits[i];
+            windowDwellMillis -= dwellMillis[i];
+            windowTransitions -= transitions[i];
+            enters[i] = 0;
+            exits[i] = 0;
+            dwellMillis[i] = 0;
+            transitions[i] = 0;
+        }
+        newestSecond = second;
+    }
+}
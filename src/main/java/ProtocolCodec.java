@@ -0,0 +1,80 @@
+package main.java;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Wire format between SerialService and the reader: how received bytes
+ * become replies and tag reports, and how commands become bytes.
+ *
+ * A codec buffers received bytes itself and decodes one frame per call,
+ * so the caller can interleave higher-priority work. Codecs are used from
+ * the port's I/O thread only and reuse their buffers.
+ */
+public interface ProtocolCodec {
+
+    /**
+     * Receives the contents of decoded frames
+     */
+    interface Listener {
+        /**
+         * A frame the format cannot classify by itself (ASCII lines), to be
+         * routed as a reply or a tag report by its contents
+         */
+        void onFrame(String frame);
+
+        /**
+         * The reply to a command, with its status rendered as in the ASCII
+         * format ("OK ...", "ERR:...")
+         */
+        void onReply(String keyword, String body);
+
+        /**
+         * One tag from an inventory report; multi-tag reports call this once per tag
+         */
+        void onTag(String tagId);
+
+        /**
+         * Bytes that could not be decoded (bad checksum, oversized or cut-off frame)
+         */
+        void onDecodeError(String reason);
+    }
+
+    String getName();
+
+    /**
+     * Bytes that can be received without discarding buffered data
+     */
+    int free();
+
+    void receive(byte[] data, int offset, int length);
+
+    /**
+     * Decode the next complete frame, if any, into the listener
+     * @return false if no complete frame is buffered
+     */
+    boolean decodeNext(Listener listener);
+
+    /**
+     * Called after a stretch of line silence, for whatever is left buffered
+     * @return true if anything was delivered to the listener
+     */
+    boolean flushPartial(Listener listener);
+
+    /**
+     * Encode a command into dst: the buffer is cleared first and left ready
+     * for reading (position 0, limit at the end of the frame)
+     * @throws IllegalArgumentException if the format cannot express the command
+     */
+    void encodeCommand(String keyword, String argument, ByteBuffer dst);
+
+    /**
+     * Codec chosen by the "rfid.protocol" property ("ascii", the default, or "binary")
+     */
+    static ProtocolCodec fromProperties(int bufferSize) {
+        String protocol = AppConfig.properties.getProperty("rfid.protocol", "ascii").trim();
+        if ("binary".equalsIgnoreCase(protocol)) {
+            return new BinaryCodec(bufferSize);
+        }
+        return new AsciiCodec(FrameDecoder.fromProperties(bufferSize));
+    }
+}
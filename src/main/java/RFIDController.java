@@ -6,44 +6,85 @@ import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.control.*;
+import javafx.stage.FileChooser;
 import javafx.util.Duration;
+import java.io.File;
+import java.io.IOException;
 import java.net.URL;
-import java.time.LocalTime;
-import java.time.format.DateTimeFormatter;
+import java.util.List;
 import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 import java.util.function.UnaryOperator;
 
 public class RFIDController implements Initializable {
     
     @FXML private TextField tagField;
     @FXML private Label statusLabel;
+    @FXML private Label linkLabel;
     @FXML private TextArea logArea;
     @FXML private Button autoDetectButton;
     @FXML private CheckBox autoWriteCheckBox;
+    @FXML private Button batchEncodeButton;
+    @FXML private ProgressIndicator busyIndicator;
+    @FXML private Button cancelButton;
+    @FXML private TableView<LiveTagTable.Row> tagTable;
+    @FXML private Label tagCountLabel;
+    @FXML private Label analyticsLabel;
     
+    private ReaderPool readerPool;
+    private volatile TagEventServer eventServer;
+    private volatile TagJournal journal;
+    private volatile DetectionExporter exporter;
+    private volatile WriteQueue writeQueue;
+    private volatile AssetCache assets;
     private SerialService serialService;
     private Timeline hideMessageTimeline;
+    private LogSink logSink;
+    private LiveTagTable liveTags;
+    private final PresenceAnalytics analytics = PresenceAnalytics.fromProperties();
+    private Timeline analyticsTimeline;
     private boolean isAutoDetectionEnabled = false;
+    private volatile BatchEncoder batchEncoder;
+    
+    // Blocking reader calls run here so the FX thread never waits on the port
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "rfid-ui-io");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private CompletableFuture<?> currentOperation;
     
     @Override
     public void initialize(URL location, ResourceBundle resources) {
+        // Log sink first, so start-up problems reach the log area and file
+        logSink = new LogSink(logArea);
+        
         try {
-            // Initialize serial service with error handling
-            String portName = MainApp.properties.getProperty("rfid.default.port", "COM1");
-            serialService = new SerialService(portName);
+            // Every tag in range, aggregated in the background and shown in coalesced batches
+            liveTags = new LiveTagTable(tagTable, tagCountLabel);
+            tagTable.getSelectionModel().selectedItemProperty().addListener((observable, previous, row) -> {
+                if (row != null) {
+                    tagField.setText(row.getTagId());
+                }
+            });
             
-            // Configure the reader for optimal performance
-            serialService.configureReader();
+            // Rolling presence figures; they are running totals, so a refresh per second is cheap
+            analyticsTimeline = new Timeline(new KeyFrame(Duration.seconds(1),
+                    e -> analyticsLabel.setText(analytics.summary())));
+            analyticsTimeline.setCycleCount(Timeline.INDEFINITE);
+            analyticsTimeline.play();
+            analytics.addTransitionListener((tagId, from, to, timestamp) ->
+                    appendLog("ZONE: " + tagId + " moved " + from + " -> " + to));
             
             // Set max character limit for tag field
             setTextFieldMaxLength(tagField, 
-                Integer.parseInt(MainApp.properties.getProperty("rfid.tag.max.length", "20"))
+                Integer.parseInt(AppConfig.properties.getProperty("rfid.tag.max.length", "20"))
             );
             
-            // Initial log entry
-            appendLog("RFID Controller initialized on port: " + portName);
-            showInfo("System ready. Port: " + portName);
-            
             // Set text field to uppercase
             tagField.setTextFormatter(new TextFormatter<>(change -> {
                 change.setText(change.getText().toUpperCase());
@@ -53,27 +94,169 @@ public class RFIDController implements Initializable {
             // Initialize auto-detect button text
             updateAutoDetectButtonText();
             
+            // Open and configure the readers in the background so the window is usable at once
+            connectReaders();
+            
         } catch (Exception e) {
             showError("Failed to initialize serial connection: " + e.getMessage());
             appendLog("INIT ERROR: " + e.getMessage());
         }
     }
     
+    private void connectReaders() {
+        List<String> ports = ReaderPool.configuredPorts();
+        String portName = String.join(", ", ports);
+        showConnecting("Connecting to reader on " + portName + "...");
+        
+        // Not cancellable: the pool must exist for cleanup even if the user gives up waiting
+        setBusy(true);
+        CompletableFuture.supplyAsync(() -> {
+            // Initialize one serial service per configured reader port
+            ReaderPool pool = new ReaderPool(ports);
+            // Until it reaches the FX thread nothing else can close the pool, so a failing
+            // step (e.g. a bad setting) must not leave its ports and supervisors running
+            try {
+                pool.openAll();
+            
+                // Configure the readers for optimal performance (unchanged settings are skipped)
+                pool.configureReaders();
+            
+                // Reconnect readers that drop out, and pick up ports that failed to open
+                pool.startSupervision();
+            
+                // Every read feeds the live tag table; EXIT events mark tags gone
+                pool.addTagReadListener(liveTags::onRead);
+                pool.addTagEventListener(liveTags::onTagEvent);
+                pool.addTagEventListener(analytics::onTagEvent);
+            
+                // What each tag is attached to, from the local asset store
+                AssetCache assetCache = AssetCache.fromProperties();
+                if (assetCache != null) {
+                    liveTags.setAssetCache(assetCache);
+                    assets = assetCache;
+                }
+            
+                // Durable audit trail of tag events and writes
+                TagJournal tagJournal = TagJournal.fromProperties();
+                if (tagJournal != null) {
+                    try {
+                        tagJournal.open();
+                        pool.journalTo(tagJournal);
+                        journal = tagJournal;
+                    } catch (IOException e) {
+                        appendLog("JOURNAL ERROR: " + e.getMessage());
+                    }
+                }
+            
+                // Write jobs that survive restarts and dropped ports
+                WriteQueue queue = WriteQueue.fromProperties();
+                if (queue != null) {
+                    try {
+                        queue.open();
+                        writeQueue = queue;
+                        appendLog("WRITE QUEUE: " + queue.summary());
+                    } catch (IOException e) {
+                        appendLog("WRITE QUEUE ERROR: " + e.getMessage());
+                    }
+                }
+            
+                // Compressed daily files for the reporting side
+                DetectionExporter detectionExporter = DetectionExporter.fromProperties();
+                if (detectionExporter != null) {
+                    try {
+                        detectionExporter.start();
+                        pool.exportTo(detectionExporter);
+                        exporter = detectionExporter;
+                    } catch (IOException e) {
+                        appendLog("EXPORT ERROR: " + e.getMessage());
+                    }
+                }
+            
+                // Share the tag events with local subscribers while auto-detection runs
+                TagEventServer server = TagEventServer.fromProperties();
+                if (server != null) {
+                    try {
+                        server.start();
+                        pool.addTagEventListener(server::publish);
+                        eventServer = server;
+                    } catch (IOException e) {
+                        appendLog("EVENT SERVER ERROR: " + e.getMessage());
+                    }
+                }
+                return pool;
+            } catch (RuntimeException e) {
+                pool.close();
+                throw e;
+            }
+        }, ioExecutor).whenComplete((pool, error) -> Platform.runLater(() -> {
+            setBusy(false);
+            if (error != null) {
+                Throwable cause = error.getCause() != null ? error.getCause() : error;
+                showError("Failed to initialize serial connection: " + cause.getMessage());
+                appendLog("INIT ERROR: " + cause.getMessage());
+                return;
+            }
+            
+            readerPool = pool;
+            
+            // Manual scan/write operations go to the first reader
+            serialService = pool.getPrimary();
+            
+            // Keep the effective line speed in view; it changes when a reader falls back
+            for (SerialService reader : pool.getReaders()) {
+                reader.addBaudRateListener(rate -> Platform.runLater(this::updateLinkLabel));
+                reader.addConnectionListener(connected -> Platform.runLater(() -> {
+                    updateLinkLabel();
+                    if (connected) {
+                        showSuccess("Reader on " + reader.getPortName() + " reconnected in "
+                                + reader.getMetrics().getLastRecoveryMillis() + " ms");
+                    } else {
+                        showWarning("Connection to reader on " + reader.getPortName() + " lost - reconnecting...");
+                    }
+                }));
+            }
+            updateLinkLabel();
+            
+            long openPorts = pool.getReaders().stream().filter(SerialService::isOpen).count();
+            appendLog("RFID Controller initialized on port: " + portName
+                    + " (ready " + MainApp.millisSinceLaunch() + " ms after launch)");
+            if (openPorts == 0) {
+                showError("Failed to open serial port: " + portName);
+            } else {
+                showInfo("System ready. Port: " + portName);
+            }
+        }));
+    }
+    
+    /**
+     * Scan/write/auto-detect need the reader, which connects in the background
+     */
+    private boolean isReaderReady() {
+        if (serialService == null) {
+            showWarning("Reader is still connecting, please wait...");
+            return false;
+        }
+        return true;
+    }
+    
     @FXML
     private void handleScan() {
+        if (!isReaderReady()) {
+            return;
+        }
         try {
             clearMessage();
             showInfo("Scanning for RFID tag...");
             
-            String tagId = serialService.readTag();
-            
-            if (tagId == null || tagId.equals("NO TAG") || tagId.trim().isEmpty()) {
-                showWarning("No tag detected! Please place a tag near the reader.");
-            } else {
-                tagField.setText(tagId.trim());
-                showSuccess("Tag scanned successfully: " + tagId.trim());
-                appendLog("MANUAL SCAN: " + tagId.trim());
-            }
+            runIoOperation(CompletableFuture.supplyAsync(serialService::readTag, ioExecutor), tagId -> {
+                if (tagId == null || tagId.equals("NO TAG") || tagId.trim().isEmpty()) {
+                    showWarning("No tag detected! Please place a tag near the reader.");
+                } else {
+                    tagField.setText(tagId.trim());
+                    showSuccess("Tag scanned successfully: " + tagId.trim());
+                    appendLog("MANUAL SCAN: " + tagId.trim());
+                }
+            }, error -> showError("Scan failed: " + error.getMessage()));
             
         } catch (Exception e) {
             showError("Scan failed: " + e.getMessage());
@@ -82,6 +265,9 @@ public class RFIDController implements Initializable {
     
     @FXML
     private void handleWrite() {
+        if (!isReaderReady()) {
+            return;
+        }
         try {
             final String newId = tagField.getText();
             
@@ -100,7 +286,13 @@ public class RFIDController implements Initializable {
             
             confirmAlert.showAndWait().ifPresent(response -> {
                 if (response == ButtonType.OK) {
-                    performWrite(newId);
+                    WriteQueue queue = writeQueue;
+                    WriteQueue.Job job = queue != null ? queue.claim(newId, "") : null;
+                    if (queue != null && job == null) {
+                        showWarning("A write of " + newId + " is already in progress.");
+                        return;
+                    }
+                    performWrite(newId, job);
                 }
             });
             
@@ -111,16 +303,20 @@ public class RFIDController implements Initializable {
     
     @FXML
     private void handleAutoDetect() {
+        if (!isReaderReady()) {
+            return;
+        }
         try {
             if (isAutoDetectionEnabled) {
                 // Stop auto-detection
-                serialService.stopAutoDetection();
+                readerPool.stopAutoDetection();
+                analytics.reset();
                 isAutoDetectionEnabled = false;
                 showInfo("Auto-detection stopped");
                 appendLog("Auto-detection disabled by user");
             } else {
-                // Start auto-detection
-                serialService.startAutoDetection(this::onTagAutoDetected);
+                // Start auto-detection on every reader
+                readerPool.startAutoDetection(this::onTagDetected);
                 isAutoDetectionEnabled = true;
                 showInfo("Auto-detection started - Tags will be detected automatically");
                 appendLog("Auto-detection enabled - waiting for tags...");
@@ -133,28 +329,63 @@ public class RFIDController implements Initializable {
         }
     }
     
+    /**
+     * Callback for the aggregated stream of all readers
+     */
+    private void onTagDetected(TagDetection detection) {
+        if (readerPool.getReaders().size() > 1) {
+            appendLog("READER " + detection.getReader() + ": " + detection.getTagId());
+        }
+        String tagId = detection.getTagId();
+        AssetCache cache = assets;
+        if (cache == null) {
+            onTagAutoDetected(tagId, null);
+            return;
+        }
+        
+        // Never wait for the asset store here: a cached asset is shown at once, a loaded one is logged later
+        CompletableFuture<Asset> asset = cache.lookup(tagId);
+        if (asset.isDone()) {
+            onTagAutoDetected(tagId, asset.getNow(null));
+        } else {
+            onTagAutoDetected(tagId, null);
+            asset.thenAccept(loaded -> {
+                if (loaded != null) {
+                    appendLog("ASSET " + tagId + ": " + loaded.describe());
+                }
+            });
+        }
+    }
+    
     /**
      * Callback method called when a tag is auto-detected
+     * @param asset what the tag is attached to, or null if not known (yet)
      */
-    private void onTagAutoDetected(String tagId) {
+    private void onTagAutoDetected(String tagId, Asset asset) {
         Platform.runLater(() -> {
             try {
-                // Update the tag field with the detected tag
-                tagField.setText(tagId);
-                showSuccess("🔍 Auto-detected: " + tagId);
-                appendLog("AUTO-DETECTED: " + tagId);
+                String described = asset != null ? tagId + " - " + asset.describe() : tagId;
+                boolean autoWrite = autoWriteCheckBox != null && autoWriteCheckBox.isSelected();
+                // With auto-write on, the field holds the ID to write and is left alone
+                String requestedId = tagField.getText().trim();
+                if (!autoWrite) {
+                    tagField.setText(tagId);
+                }
+                showSuccess("🔍 Auto-detected: " + described);
+                appendLog("AUTO-DETECTED: " + described);
                 
-                // If auto-write is enabled and we have a new ID to write
-                if (autoWriteCheckBox != null && autoWriteCheckBox.isSelected()) {
-                    // Check if there's a different ID in the field to write
-                    String currentFieldText = tagField.getText();
-                    if (!currentFieldText.equals(tagId)) {
-                        showInfo("Auto-write enabled - preparing to write: " + currentFieldText);
-                        // Small delay before writing
-                        Timeline autoWriteDelay = new Timeline(
-                            new KeyFrame(Duration.millis(1000), e -> performWrite(currentFieldText))
-                        );
-                        autoWriteDelay.play();
+                if (autoWrite) {
+                    WriteQueue queue = writeQueue;
+                    // A job left pending for this very tag (failed attempt, restart, dropped port) goes first
+                    WriteQueue.Job pending = queue != null ? queue.claimPending(tagId) : null;
+                    if (pending != null) {
+                        scheduleAutoWrite(pending.getTargetId(), pending);
+                    } else if (!requestedId.isEmpty() && !requestedId.equals(tagId)) {
+                        // Claimed now, so further detections before the write starts don't schedule it again
+                        WriteQueue.Job job = queue != null ? queue.claim(requestedId, tagId) : null;
+                        if (queue == null || job != null) {
+                            scheduleAutoWrite(requestedId, job);
+                        }
                     }
                 }
                 
@@ -164,51 +395,184 @@ public class RFIDController implements Initializable {
         });
     }
     
-    private void performWrite(String tagId) {
+    private void scheduleAutoWrite(String tagId, WriteQueue.Job job) {
+        showInfo("Auto-write enabled - preparing to write: " + tagId);
+        // Small delay before writing
+        Timeline autoWriteDelay = new Timeline(
+            new KeyFrame(Duration.millis(1000), e -> performWrite(tagId, job))
+        );
+        autoWriteDelay.play();
+    }
+    
+    /**
+     * @param job the claimed job the write belongs to, or null if the write queue is off
+     */
+    private void performWrite(String tagId, WriteQueue.Job job) {
+        WriteQueue queue = writeQueue;
         try {
             showInfo("Writing tag ID: " + tagId + "...");
-            appendLog("WRITE ATTEMPT: " + tagId);
+            appendLog("WRITE ATTEMPT: " + tagId + (job != null ? " (job " + job.getId() + ", attempt "
+                    + (job.getAttempts() + 1) + ")" : ""));
             
-            boolean success = serialService.writeTag(tagId);
+            // The write goes out only once the attempt is on disk
+            CompletableFuture<Boolean> write = job == null ? serialService.writeTagAsync(tagId)
+                    : queue.started(job).thenCompose(recorded -> serialService.writeTagAsync(tagId));
+            if (job != null) {
+                // A cancelled write may or may not have reached the tag; try it again later
+                write.whenComplete((success, error) -> {
+                    if (write.isCancelled()) {
+                        queue.failed(job);
+                    }
+                });
+            }
             
-            if (success) {
-                showSuccess("✅ Tag written successfully: " + tagId);
-                appendLog("WRITE SUCCESS: " + tagId);
-                
-                // Verify the write by reading the tag again
-                Platform.runLater(() -> {
+            runIoOperation(write, success -> {
+                if (success) {
+                    if (job != null) {
+                        queue.written(job);
+                    }
+                    showSuccess("✅ Tag written successfully: " + tagId);
+                    appendLog("WRITE SUCCESS: " + tagId);
+                    
+                    // Verify the write by reading the tag again
                     Timeline verifyTimeline = new Timeline(
-                        new KeyFrame(Duration.millis(500), e -> verifyWrittenTag(tagId))
+                        new KeyFrame(Duration.millis(500), e -> verifyWrittenTag(tagId, job))
                     );
                     verifyTimeline.play();
-                });
-                
-            } else {
-                showError("❌ Failed to write tag. Please check connection and try again.");
-                appendLog("WRITE FAILED: " + tagId);
-            }
+                    
+                } else {
+                    if (job != null) {
+                        queue.failed(job);
+                    }
+                    showError("❌ Failed to write tag. Please check connection and try again.");
+                    appendLog("WRITE FAILED: " + tagId);
+                }
+            }, error -> {
+                if (job != null) {
+                    queue.failed(job);
+                }
+                showError("Write failed: " + error.getMessage());
+                appendLog("WRITE ERROR: " + error.getMessage());
+            });
             
         } catch (Exception e) {
+            if (job != null) {
+                queue.failed(job);
+            }
             showError("Write failed: " + e.getMessage());
             appendLog("WRITE ERROR: " + e.getMessage());
         }
     }
     
-    private void verifyWrittenTag(String expectedId) {
+    /**
+     * A job whose read-back can't be done stays WRITTEN, i.e. written but not verified
+     */
+    private void verifyWrittenTag(String expectedId, WriteQueue.Job job) {
+        WriteQueue queue = writeQueue;
+        SerialService service = serialService;
         try {
-            String readId = serialService.readTag();
-            if (readId != null && readId.trim().equals(expectedId)) {
-                showSuccess("✅ Write verification successful: " + expectedId);
-                appendLog("WRITE VERIFIED: " + expectedId);
-            } else {
-                showWarning("⚠️ Write verification failed. Expected: " + expectedId + ", Read: " + readId);
-                appendLog("WRITE VERIFICATION FAILED - Expected: " + expectedId + ", Got: " + readId);
-            }
+            runIoOperation(CompletableFuture.supplyAsync(service::readTag, ioExecutor), readId -> {
+                if (readId != null && readId.trim().equals(expectedId)) {
+                    if (job != null) {
+                        queue.verified(job);
+                    }
+                    // Each ID typed for auto-write goes onto one tag only
+                    if (autoWriteCheckBox != null && autoWriteCheckBox.isSelected()
+                            && tagField.getText().trim().equals(expectedId)) {
+                        tagField.clear();
+                    }
+                    showSuccess("✅ Write verification successful: " + expectedId);
+                    appendLog("WRITE VERIFIED: " + expectedId);
+                } else {
+                    if (job != null) {
+                        queue.failed(job);
+                    }
+                    service.getMetrics().verifyFailed();
+                    showWarning("⚠️ Write verification failed. Expected: " + expectedId + ", Read: " + readId);
+                    appendLog("WRITE VERIFICATION FAILED - Expected: " + expectedId + ", Got: " + readId);
+                }
+            }, error -> showWarning("⚠️ Could not verify written tag: " + error.getMessage()));
         } catch (Exception e) {
             showWarning("⚠️ Could not verify written tag: " + e.getMessage());
         }
     }
     
+    @FXML
+    private void handleBatchEncode() {
+        try {
+            // A second click stops the running batch
+            BatchEncoder running = batchEncoder;
+            if (running != null) {
+                running.cancel();
+                showInfo("Stopping batch encoding...");
+                return;
+            }
+            
+            if (!isReaderReady()) {
+                return;
+            }
+            if (autoWriteCheckBox != null && autoWriteCheckBox.isSelected()) {
+                showWarning("Disable auto-write before starting a batch.");
+                return;
+            }
+            
+            FileChooser chooser = new FileChooser();
+            chooser.setTitle("Select Tag ID List");
+            chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Tag ID lists", "*.csv", "*.txt"));
+            File csvFile = chooser.showOpenDialog(tagField.getScene().getWindow());
+            if (csvFile == null) {
+                return;
+            }
+            
+            // Blank tags are picked up through auto-detection
+            if (!isAutoDetectionEnabled) {
+                handleAutoDetect();
+            }
+            
+            BatchEncoder encoder = new BatchEncoder(serialService, csvFile, this::appendLog);
+            batchEncoder = encoder;
+            batchEncodeButton.setText("Stop Batch");
+            showInfo("Batch encoding " + csvFile.getName() + " - present blank tags to the reader");
+            appendLog("BATCH STARTED: " + csvFile.getAbsolutePath());
+            
+            Thread worker = new Thread(() -> runBatch(encoder), "rfid-batch-encoder");
+            worker.setDaemon(true);
+            worker.start();
+            
+        } catch (Exception e) {
+            showError("Failed to start batch encoding: " + e.getMessage());
+        }
+    }
+    
+    private void runBatch(BatchEncoder encoder) {
+        BatchEncoder.Result result = null;
+        String error = null;
+        try {
+            result = encoder.run();
+        } catch (IOException e) {
+            error = e.getMessage();
+        }
+        
+        final BatchEncoder.Result summary = result;
+        final String failure = error;
+        Platform.runLater(() -> {
+            batchEncoder = null;
+            batchEncodeButton.setText("Batch Encode");
+            
+            if (summary == null) {
+                showError("Batch encoding failed: " + failure);
+                return;
+            }
+            appendLog("BATCH DONE: " + summary);
+            if (!summary.getFailures().isEmpty()) {
+                appendLog("BATCH FAILURES: " + String.join(", ", summary.getFailures()));
+                showWarning("Batch finished with " + summary.getFailures().size() + " failures: " + summary);
+            } else {
+                showSuccess("Batch finished: " + summary);
+            }
+        });
+    }
+    
     private void updateAutoDetectButtonText() {
         if (autoDetectButton != null) {
             if (isAutoDetectionEnabled) {
@@ -233,14 +597,16 @@ public class RFIDController implements Initializable {
             if (response == ButtonType.YES) {
                 // Stop auto-detection if running
                 if (isAutoDetectionEnabled) {
-                    serialService.stopAutoDetection();
+                    readerPool.stopAutoDetection();
+                    analytics.reset();
                     isAutoDetectionEnabled = false;
                     updateAutoDetectButtonText();
                 }
                 
                 tagField.clear();
                 clearMessage();
-                logArea.clear();
+                logSink.clearVisible();
+                liveTags.clear();
                 
                 if (autoWriteCheckBox != null) {
                     autoWriteCheckBox.setSelected(false);
@@ -254,23 +620,119 @@ public class RFIDController implements Initializable {
     
     @FXML
     private void handleTestConnection() {
+        if (!isReaderReady()) {
+            return;
+        }
         try {
             showInfo("Testing connection...");
-            String response = serialService.sendCommand("STATUS\r\n");
+            long timeout = Long.parseLong(AppConfig.properties.getProperty("serial.timeout", "1000"));
             
-            if (response != null && !response.equals("NO RESPONSE")) {
-                showSuccess("Connection test successful: " + response);
-                appendLog("CONNECTION TEST: " + response);
-            } else {
-                showWarning("Connection test failed - no response from reader");
-                appendLog("CONNECTION TEST: Failed");
-            }
+            runIoOperation(serialService.sendCommandAsync("STATUS\r\n", timeout, IoScheduler.Priority.STATUS),
+                response -> {
+                    showSuccess("Connection test successful: " + response
+                            + " (" + response.getRoundTripMillis() + " ms)");
+                    appendLog("CONNECTION TEST: " + response);
+                }, error -> {
+                    showWarning("Connection test failed - no response from reader");
+                    appendLog("CONNECTION TEST: Failed");
+                });
             
         } catch (Exception e) {
             showError("Connection test error: " + e.getMessage());
         }
     }
     
+    /**
+     * Re-read the settings files and apply the serial settings to the open
+     * readers, without reconnecting
+     */
+    @FXML
+    private void handleReloadSettings() {
+        if (readerPool == null) {
+            showWarning("Readers are not connected yet");
+            return;
+        }
+        showInfo("Reloading settings...");
+        ReaderPool pool = readerPool;
+        runIoOperation(CompletableFuture.runAsync(() -> {
+            AppConfig.load();
+            pool.applySettings();
+        }, ioExecutor), ignored -> {
+            updateLinkLabel();
+            showSuccess("Settings reloaded");
+        }, error -> showError("Failed to reload settings: " + error.getMessage()));
+    }
+    
+    private void updateLinkLabel() {
+        if (linkLabel == null || readerPool == null) {
+            return;
+        }
+        StringBuilder text = new StringBuilder();
+        for (SerialService reader : readerPool.getReaders()) {
+            int rate = reader.getBaudRate();
+            if (rate <= 0 && reader.isConnected()) {
+                continue;
+            }
+            if (text.length() > 0) {
+                text.append("  ");
+            }
+            text.append(reader.getPortName()).append(": ");
+            if (reader.isConnected()) {
+                text.append(rate).append(" baud");
+            } else {
+                text.append("disconnected");
+            }
+        }
+        linkLabel.setText(text.toString());
+    }
+    
+    @FXML
+    private void handleCancel() {
+        CompletableFuture<?> operation = currentOperation;
+        if (operation != null && operation.cancel(true)) {
+            currentOperation = null;
+            setBusy(false);
+            // A write already sent to the reader cannot be taken back, only its result is dropped
+            showWarning("Operation cancelled");
+            appendLog("Reader operation cancelled by user");
+        }
+    }
+    
+    /**
+     * Track a background reader operation: show progress while it runs and
+     * deliver its outcome on the FX thread. The UI thread never waits on it.
+     */
+    private <T> void runIoOperation(CompletableFuture<T> operation, Consumer<T> onSuccess,
+                                    Consumer<Throwable> onFailure) {
+        currentOperation = operation;
+        setBusy(true);
+        
+        operation.whenComplete((result, error) -> Platform.runLater(() -> {
+            if (currentOperation == operation) {
+                currentOperation = null;
+                setBusy(false);
+            }
+            if (operation.isCancelled()) {
+                return; // reported by handleCancel
+            }
+            if (error != null) {
+                onFailure.accept(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error);
+            } else {
+                onSuccess.accept(result);
+            }
+        }));
+    }
+    
+    private void setBusy(boolean busy) {
+        if (busyIndicator != null) {
+            busyIndicator.setVisible(busy);
+        }
+        if (cancelButton != null) {
+            cancelButton.setDisable(!busy);
+        }
+    }
+    
     // Message display methods (keeping existing ones)
     private void showError(String message) {
         statusLabel.setText("❌ " + message);
@@ -308,6 +770,20 @@ public class RFIDController implements Initializable {
         autoHideMessage(3000);
     }
     
+    /**
+     * Like showInfo, but stays up until the next status message
+     */
+    private void showConnecting(String message) {
+        if (hideMessageTimeline != null) {
+            hideMessageTimeline.stop();
+        }
+        statusLabel.setText("🔌 " + message);
+        statusLabel.setStyle("-fx-text-fill: #3498db; -fx-background-color: #e8f4fd; " +
+                           "-fx-padding: 8px; -fx-background-radius: 5px; " +
+                           "-fx-border-color: #3498db; -fx-border-width: 1px; -fx-border-radius: 5px;");
+        appendLog("INFO: " + message);
+    }
+    
     private void clearMessage() {
         if (hideMessageTimeline != null) {
             hideMessageTimeline.stop();
@@ -331,11 +807,8 @@ public class RFIDController implements Initializable {
     }
     
     private void appendLog(String logEntry) {
-        String time = LocalTime.now().format(DateTimeFormatter.ofPattern("HH:mm:ss"));
-        Platform.runLater(() -> {
-            logArea.appendText("[" + time + "] " + logEntry + "\n");
-            logArea.setScrollTop(Double.MAX_VALUE);
-        });
+        // Safe from any thread; the sink batches UI updates once per frame
+        logSink.append(logEntry);
     }
     
     private void setTextFieldMaxLength(TextField textField, int maxLength) {
@@ -351,14 +824,45 @@ public class RFIDController implements Initializable {
     // Cleanup method
     public void cleanup() {
         try {
-            if (serialService != null) {
-                serialService.stopAutoDetection();
-                serialService.closePort();
+            if (batchEncoder != null) {
+                batchEncoder.cancel();
+            }
+            if (currentOperation != null) {
+                currentOperation.cancel(true);
+            }
+            ioExecutor.shutdownNow();
+            if (eventServer != null) {
+                eventServer.close();
+            }
+            if (readerPool != null) {
+                readerPool.close();
                 appendLog("Serial connection closed");
             }
+            if (journal != null) {
+                journal.close();
+            }
+            if (exporter != null) {
+                exporter.close();
+            }
+            if (writeQueue != null) {
+                writeQueue.close();
+            }
+            if (assets != null) {
+                System.out.println(assets.snapshot());
+                assets.close();
+            }
             if (hideMessageTimeline != null) {
                 hideMessageTimeline.stop();
             }
+            if (liveTags != null) {
+                liveTags.close();
+            }
+            if (analyticsTimeline != null) {
+                analyticsTimeline.stop();
+            }
+            if (logSink != null) {
+                logSink.close();
+            }
         } catch (Exception e) {
             System.err.println("Error during cleanup: " + e.getMessage());
         }
@@ -0,0 +1,73 @@
+package main.java;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * Remembers the reader settings (power, region, mode, ...) last applied to
+ * each port, so configureReader() only sends the ones that changed.
+ * Stored as a properties file, by default in the user's home directory.
+ */
+public class ReaderConfigCache {
+    private static ReaderConfigCache instance;
+
+    private final File file;
+    private final Properties applied = new Properties();
+
+    private ReaderConfigCache(File file) {
+        this.file = file;
+        if (file.isFile()) {
+            try (InputStream in = new FileInputStream(file)) {
+                applied.load(in);
+            } catch (IOException e) {
+                System.err.println("Ignoring unreadable reader config cache " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Cache at "rfid.config.cache.file" (default ~/.rfid2/reader-config.properties)
+     */
+    public static synchronized ReaderConfigCache getInstance() {
+        if (instance == null) {
+            String defaultPath = System.getProperty("user.home") + File.separator + ".rfid2"
+                    + File.separator + "reader-config.properties";
+            instance = new ReaderConfigCache(new File(
+                    AppConfig.properties.getProperty("rfid.config.cache.file", defaultPath)));
+        }
+        return instance;
+    }
+
+    public synchronized boolean isApplied(String portName, String setting, String value) {
+        return value.equals(applied.getProperty(portName + "." + setting));
+    }
+
+    public synchronized void markApplied(String portName, String setting, String value) {
+        applied.setProperty(portName + "." + setting, value);
+    }
+
+    /**
+     * Forget everything applied to a port, e.g. after the reader was power cycled
+     */
+    public synchronized void invalidate(String portName) {
+        applied.keySet().removeIf(key -> ((String) key).startsWith(portName + "."));
+    }
+
+    public synchronized void save() {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            System.err.println("Cannot create directory for reader config cache: " + dir);
+            return;
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            applied.store(out, "Reader settings last applied per port");
+        } catch (IOException e) {
+            System.err.println("Failed to save reader config cache: " + e.getMessage());
+        }
+    }
+}
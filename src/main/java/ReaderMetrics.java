@@ -0,0 +1,294 @@
+package main.java;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters, gauges and a command latency histogram for one reader.
+ *
+ * Counters are LongAdders and the histogram is lock-free, so recording is
+ * cheap enough to leave on in the receive path. The metrics are published
+ * as the MBean "main.java:type=ReaderMetrics,port=&lt;port&gt;" and can be
+ * logged as a one-line snapshot.
+ */
+public class ReaderMetrics implements ReaderMetricsMBean {
+    // Shortest window the reads/sec rate is measured over
+    private static final long RATE_WINDOW_NANOS = 1_000_000_000L;
+
+    private final String port;
+    private final LongAdder framesReceived = new LongAdder();
+    private final LongAdder tagReads = new LongAdder();
+    private final LongAdder emptyReads = new LongAdder();
+    private final LongAdder decodeErrors = new LongAdder();
+    private final LongAdder commandsSent = new LongAdder();
+    private final LongAdder commandTimeouts = new LongAdder();
+    private final LongAdder commandErrors = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder writeFailures = new LongAdder();
+    private final LongAdder verifyFailures = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+    private volatile long lastRecoveryMillis;
+    private final LatencyHistogram commandLatency = new LatencyHistogram();
+
+    private volatile IntSupplier ioQueueDepth = () -> 0;
+    private volatile IntSupplier callbackQueueDepth = () -> 0;
+
+    // Reads/sec is computed from the reads since the rate was last updated
+    private long rateNanos = System.nanoTime();
+    private long rateReads;
+    private double readsPerSecond;
+
+    private ObjectName objectName;
+
+    public ReaderMetrics(String port) {
+        this.port = port;
+    }
+
+    public void frameReceived() {
+        framesReceived.increment();
+    }
+
+    public void tagRead() {
+        tagReads.increment();
+    }
+
+    public void emptyRead() {
+        emptyReads.increment();
+    }
+
+    public void decodeError() {
+        decodeErrors.increment();
+    }
+
+    public void commandSent() {
+        commandsSent.increment();
+    }
+
+    public void commandCompleted(Response response) {
+        commandLatency.record(response.getRoundTripNanos());
+        if (response.isError()) {
+            commandErrors.increment();
+        }
+    }
+
+    public void commandTimedOut() {
+        commandTimeouts.increment();
+    }
+
+    public void writeCompleted(boolean verified) {
+        writes.increment();
+        if (!verified) {
+            writeFailures.increment();
+        }
+    }
+
+    /**
+     * A written tag read back with an ID other than the one written
+     */
+    public void verifyFailed() {
+        verifyFailures.increment();
+    }
+
+    public void reconnected() {
+        reconnects.increment();
+    }
+
+    public void recovered(long millis) {
+        lastRecoveryMillis = millis;
+    }
+
+    public void setIoQueueGauge(IntSupplier depth) {
+        this.ioQueueDepth = depth;
+    }
+
+    /**
+     * Depth of the queue between this reader and the detection consumer
+     */
+    public void setCallbackQueueGauge(IntSupplier depth) {
+        this.callbackQueueDepth = depth;
+    }
+
+    @Override
+    public String getPort() {
+        return port;
+    }
+
+    @Override
+    public long getFramesReceived() {
+        return framesReceived.sum();
+    }
+
+    @Override
+    public long getTagReads() {
+        return tagReads.sum();
+    }
+
+    /**
+     * Updated from the reads since the last update once at least a second
+     * has passed, so any caller sees a current rate without snapshots running
+     */
+    @Override
+    public synchronized double getReadsPerSecond() {
+        long now = System.nanoTime();
+        long elapsed = now - rateNanos;
+        if (elapsed >= RATE_WINDOW_NANOS) {
+            long reads = tagReads.sum();
+            readsPerSecond = (reads - rateReads) / (elapsed / 1e9);
+            rateNanos = now;
+            rateReads = reads;
+        }
+        return readsPerSecond;
+    }
+
+    @Override
+    public long getEmptyReads() {
+        return emptyReads.sum();
+    }
+
+    @Override
+    public long getDecodeErrors() {
+        return decodeErrors.sum();
+    }
+
+    @Override
+    public long getCommandsSent() {
+        return commandsSent.sum();
+    }
+
+    @Override
+    public long getCommandTimeouts() {
+        return commandTimeouts.sum();
+    }
+
+    @Override
+    public long getCommandErrors() {
+        return commandErrors.sum();
+    }
+
+    @Override
+    public double getCommandLatencyMeanMillis() {
+        return commandLatency.getMeanMillis();
+    }
+
+    @Override
+    public double getCommandLatencyP50Millis() {
+        return commandLatency.getPercentileMillis(50);
+    }
+
+    @Override
+    public double getCommandLatencyP99Millis() {
+        return commandLatency.getPercentileMillis(99);
+    }
+
+    @Override
+    public double getCommandLatencyMaxMillis() {
+        return commandLatency.getMaxMillis();
+    }
+
+    @Override
+    public long getWrites() {
+        return writes.sum();
+    }
+
+    @Override
+    public long getWriteFailures() {
+        return writeFailures.sum();
+    }
+
+    @Override
+    public long getVerifyFailures() {
+        return verifyFailures.sum();
+    }
+
+    @Override
+    public int getCallbackQueueDepth() {
+        return callbackQueueDepth.getAsInt();
+    }
+
+    @Override
+    public int getIoQueueDepth() {
+        return ioQueueDepth.getAsInt();
+    }
+
+    @Override
+    public long getReconnects() {
+        return reconnects.sum();
+    }
+
+    @Override
+    public long getLastRecoveryMillis() {
+        return lastRecoveryMillis;
+    }
+
+    @Override
+    public void reset() {
+        framesReceived.reset();
+        tagReads.reset();
+        emptyReads.reset();
+        decodeErrors.reset();
+        commandsSent.reset();
+        commandTimeouts.reset();
+        commandErrors.reset();
+        writes.reset();
+        writeFailures.reset();
+        verifyFailures.reset();
+        reconnects.reset();
+        lastRecoveryMillis = 0;
+        commandLatency.reset();
+        synchronized (this) {
+            rateReads = 0;
+            rateNanos = System.nanoTime();
+            readsPerSecond = 0;
+        }
+    }
+
+    /**
+     * Describe the current values in one line
+     */
+    public String snapshot() {
+        return String.format("Metrics %s: reads=%d (%.1f/s) empty=%d decodeErrors=%d frames=%d"
+                        + " commands=%d timeouts=%d errors=%d latency p50=%.1fms p99=%.1fms max=%.1fms"
+                        + " writes=%d failed=%d verifyFailed=%d ioQueue=%d callbackQueue=%d reconnects=%d recovery=%dms",
+                port, getTagReads(), getReadsPerSecond(), getEmptyReads(), getDecodeErrors(), getFramesReceived(),
+                getCommandsSent(), getCommandTimeouts(), getCommandErrors(), getCommandLatencyP50Millis(),
+                getCommandLatencyP99Millis(), getCommandLatencyMaxMillis(), getWrites(), getWriteFailures(),
+                getVerifyFailures(), getIoQueueDepth(), getCallbackQueueDepth(), getReconnects(),
+                getLastRecoveryMillis());
+    }
+
+    /**
+     * Publish on the platform MBean server; failures are reported, not thrown
+     */
+    public synchronized void register() {
+        if (objectName != null) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName("main.java:type=ReaderMetrics,port=" + ObjectName.quote(port));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+            objectName = name;
+        } catch (Exception e) {
+            System.err.println("Failed to register metrics MBean for " + port + ": " + e.getMessage());
+        }
+    }
+
+    public synchronized void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (Exception e) {
+            System.err.println("Failed to unregister metrics MBean for " + port + ": " + e.getMessage());
+        }
+        objectName = null;
+    }
+}
@@ -0,0 +1,58 @@
+package main.java;
+
+/**
+ * JMX view of one reader's {@link ReaderMetrics}
+ */
+public interface ReaderMetricsMBean {
+
+    String getPort();
+
+    long getFramesReceived();
+
+    long getTagReads();
+
+    /**
+     * Tag reads per second, over at least the last second
+     */
+    double getReadsPerSecond();
+
+    long getEmptyReads();
+
+    long getDecodeErrors();
+
+    long getCommandsSent();
+
+    long getCommandTimeouts();
+
+    long getCommandErrors();
+
+    double getCommandLatencyMeanMillis();
+
+    double getCommandLatencyP50Millis();
+
+    double getCommandLatencyP99Millis();
+
+    double getCommandLatencyMaxMillis();
+
+    long getWrites();
+
+    long getWriteFailures();
+
+    /**
+     * Writes the reader confirmed whose tag then read back with a different ID
+     */
+    long getVerifyFailures();
+
+    int getCallbackQueueDepth();
+
+    int getIoQueueDepth();
+
+    long getReconnects();
+
+    /**
+     * Time from losing the connection to the reader being configured again, for the last recovery
+     */
+    long getLastRecoveryMillis();
+
+    void reset();
+}
@@ -0,0 +1,349 @@
+package main.java;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Runs one SerialService per configured reader port and merges their
+ * detections into a single ordered stream.
+ *
+ * Each reader keeps its own serial event thread, so readers never wait on
+ * each other. Detections are queued and delivered to the consumer from one
+ * dispatch thread; a failing port or a slow consumer only costs that
+ * reader's reports (or drops when the queue is full), never the other reads.
+ */
+public class ReaderPool {
+    private static final int QUEUE_CAPACITY = 10000;
+
+    private final List<SerialService> readers = new ArrayList<>();
+    private final BlockingQueue<TagDetection> detections = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong droppedDetections = new AtomicLong();
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final Map<String, BaudNegotiator> negotiators = new ConcurrentHashMap<>();
+    private final List<ConnectionSupervisor> supervisors = new ArrayList<>();
+    private ExecutorService dispatcher;
+
+    public ReaderPool(List<String> portNames) {
+        for (String portName : portNames) {
+            try {
+                SerialService reader = new SerialService(portName);
+                reader.getMetrics().setCallbackQueueGauge(detections::size);
+                readers.add(reader);
+            } catch (Exception e) {
+                // One bad port must not keep the others from starting
+                System.err.println("Failed to create reader on " + portName + ": " + e.getMessage());
+            }
+        }
+        if (readers.isEmpty()) {
+            throw new IllegalStateException("No RFID reader could be created for ports " + portNames);
+        }
+    }
+
+    /**
+     * Ports from "rfid.ports" (comma separated), falling back to "rfid.default.port"
+     */
+    public static List<String> configuredPorts() {
+        List<String> ports = new ArrayList<>();
+        String configured = AppConfig.properties.getProperty("rfid.ports", "");
+        for (String port : configured.split(",")) {
+            if (!port.trim().isEmpty()) {
+                ports.add(port.trim());
+            }
+        }
+        if (ports.isEmpty()) {
+            ports.add(AppConfig.properties.getProperty("rfid.default.port", "COM1"));
+        }
+        return ports;
+    }
+
+    /**
+     * Start auto-detection on every reader
+     * @param consumer receives detections from all readers, in arrival order, on one thread
+     */
+    public void startAutoDetection(Consumer<TagDetection> consumer) {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        
+        dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rfid-pool-dispatch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dispatcher.execute(() -> dispatch(consumer));
+        
+        for (SerialService reader : readers) {
+            String portName = reader.getPortName();
+            try {
+                reader.startAutoDetection(tagId -> enqueue(portName, tagId));
+            } catch (Exception e) {
+                System.err.println("Failed to start auto-detection on " + portName + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public void stopAutoDetection() {
+        if (!running.compareAndSet(true, false)) {
+            return;
+        }
+        
+        for (SerialService reader : readers) {
+            try {
+                reader.stopAutoDetection();
+            } catch (Exception e) {
+                System.err.println("Failed to stop auto-detection on " + reader.getPortName() + ": " + e.getMessage());
+            }
+        }
+        
+        dispatcher.shutdownNow();
+        detections.clear();
+    }
+
+    /**
+     * Receive ENTER/REPORT/EXIT events from every reader, on the reporting
+     * reader's I/O thread, so the listener must not block
+     */
+    public void addTagEventListener(Consumer<TagEvent> listener) {
+        for (SerialService reader : readers) {
+            reader.addTagEventListener(listener);
+        }
+    }
+
+    /**
+     * Receive every tag read (reader port, tag ID), duplicates included, on
+     * the reporting reader's I/O thread, so the listener must not block
+     */
+    public void addTagReadListener(BiConsumer<String, String> listener) {
+        for (SerialService reader : readers) {
+            String portName = reader.getPortName();
+            reader.addTagReadListener(tagId -> listener.accept(portName, tagId));
+        }
+    }
+
+    /**
+     * Attach the journal to every reader's tag events and writes
+     */
+    public void journalTo(TagJournal journal) {
+        for (SerialService reader : readers) {
+            String portName = reader.getPortName();
+            reader.addTagEventListener(journal::onTagEvent);
+            reader.addWriteListener((tagId, verified) -> journal.onWrite(portName, tagId, verified));
+        }
+    }
+
+    /**
+     * Attach the exporter to every reader's tag events and writes
+     */
+    public void exportTo(DetectionExporter exporter) {
+        for (SerialService reader : readers) {
+            String portName = reader.getPortName();
+            reader.addTagEventListener(exporter::onTagEvent);
+            reader.addWriteListener((tagId, verified) -> exporter.onWrite(portName, tagId, verified));
+        }
+    }
+
+    private void enqueue(String portName, String tagId) {
+        TagDetection detection = new TagDetection(sequence.incrementAndGet(), portName, tagId,
+                System.currentTimeMillis());
+        
+        // Never block the serial event thread on a slow consumer
+        if (!detections.offer(detection)) {
+            droppedDetections.incrementAndGet();
+        }
+    }
+
+    private void dispatch(Consumer<TagDetection> consumer) {
+        while (running.get()) {
+            try {
+                TagDetection detection = detections.poll(200, TimeUnit.MILLISECONDS);
+                if (detection != null) {
+                    consumer.accept(detection);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                System.err.println("Error delivering tag detection: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Open every reader's port
+     * @return the number of ports that opened
+     */
+    public int openAll() {
+        int opened = 0;
+        for (SerialService reader : readers) {
+            try {
+                if (reader.open()) {
+                    opened++;
+                }
+            } catch (Exception e) {
+                System.err.println("Failed to open reader on " + reader.getPortName() + ": " + e.getMessage());
+            }
+        }
+        return opened;
+    }
+
+    /**
+     * Configure every open reader, skipping (and reporting) readers that fail.
+     * With "serial.baudrate.auto" each reader is first moved to its fastest
+     * stable line speed, and its link watched from then on.
+     */
+    public void configureReaders() {
+        for (SerialService reader : readers) {
+            if (!reader.isOpen()) {
+                continue;
+            }
+            try {
+                negotiateBaudRate(reader);
+                reader.configureReader();
+            } catch (Exception e) {
+                System.err.println("Failed to configure reader on " + reader.getPortName() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Watch every reader's connection and bring lost readers back: reopen,
+     * re-send all settings (the reader may have been power cycled) and
+     * renegotiate the line speed. Readers that failed to open are retried too.
+     */
+    public synchronized void startSupervision() {
+        if (!supervisors.isEmpty()) {
+            return;
+        }
+        for (SerialService reader : readers) {
+            ConnectionSupervisor supervisor = ConnectionSupervisor.fromProperties(reader, () -> {
+                ReaderConfigCache.getInstance().invalidate(reader.getPortName());
+                renegotiateBaudRate(reader);
+                reader.configureReader();
+            });
+            if (supervisor != null) {
+                supervisor.start();
+                supervisors.add(supervisor);
+            }
+        }
+    }
+
+    private void negotiateBaudRate(SerialService reader) {
+        BaudNegotiator negotiator = BaudNegotiator.fromProperties(reader);
+        BaudNegotiator previous = negotiator != null
+                ? negotiators.put(reader.getPortName(), negotiator)
+                : negotiators.remove(reader.getPortName());
+        if (previous != null) {
+            previous.stopMonitoring();
+        }
+        if (negotiator != null && negotiator.negotiate() > 0) {
+            negotiator.startMonitoring();
+        }
+    }
+
+    /**
+     * After a reconnect: the reader's negotiator already knows where it
+     * powers up and which rates held up, so finding it again is quick
+     */
+    private void renegotiateBaudRate(SerialService reader) {
+        BaudNegotiator negotiator = negotiators.get(reader.getPortName());
+        if (negotiator == null) {
+            negotiateBaudRate(reader);
+            return;
+        }
+        negotiator.stopMonitoring();
+        if (negotiator.negotiate() > 0) {
+            negotiator.startMonitoring();
+        }
+    }
+
+    /**
+     * Apply reloaded serial settings to the open readers without reopening
+     * them: the command timeout, and the line speed (negotiated again in auto
+     * mode, otherwise switched to "serial.baudrate" on reader and port).
+     * Blocks while the readers are switched; call it off the UI thread.
+     */
+    public void applySettings() {
+        long timeout = Long.parseLong(AppConfig.properties.getProperty("serial.timeout", "1000"));
+        boolean auto = Boolean.parseBoolean(AppConfig.properties.getProperty("serial.baudrate.auto", "false"));
+        int baudRate = Integer.parseInt(AppConfig.properties.getProperty("serial.baudrate", "9600").trim());
+        
+        for (SerialService reader : readers) {
+            reader.setCommandTimeout(timeout);
+            if (!reader.isOpen()) {
+                continue;
+            }
+            if (auto) {
+                negotiateBaudRate(reader);
+                continue;
+            }
+            BaudNegotiator negotiator = negotiators.remove(reader.getPortName());
+            if (negotiator != null) {
+                negotiator.stopMonitoring();
+            }
+            int current = reader.getBaudRate();
+            if (current <= 0 || current == baudRate) {
+                continue;
+            }
+            try {
+                if (!reader.changeBaudRate(baudRate).get()) {
+                    System.err.println("Reader on " + reader.getPortName() + " refused " + baudRate + " baud");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                System.err.println("Failed to switch " + reader.getPortName() + " to " + baudRate + " baud: "
+                        + e.getCause().getMessage());
+            }
+        }
+    }
+
+    /**
+     * The first configured reader, used for manual scan/write operations
+     */
+    public SerialService getPrimary() {
+        return readers.get(0);
+    }
+
+    public List<SerialService> getReaders() {
+        return Collections.unmodifiableList(readers);
+    }
+
+    public boolean isAutoDetecting() {
+        return running.get();
+    }
+
+    public long getDroppedDetections() {
+        return droppedDetections.get();
+    }
+
+    public void close() {
+        synchronized (this) {
+            for (ConnectionSupervisor supervisor : supervisors) {
+                supervisor.stop();
+            }
+            supervisors.clear();
+        }
+        stopAutoDetection();
+        for (BaudNegotiator negotiator : negotiators.values()) {
+            negotiator.stopMonitoring();
+        }
+        for (SerialService reader : readers) {
+            reader.closePort();
+        }
+    }
+}
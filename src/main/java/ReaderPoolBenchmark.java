@@ -0,0 +1,205 @@
+package main.java;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Checks the reader pool against in-process virtual readers
+ * ({@link VirtualReaderTransport}), no serial ports needed:
+ *
+ *   scaling - aggregate reads/s and merged detections/s with 1..n readers;
+ *             each reader runs on its own thread, so the aggregate should
+ *             grow with the number of readers
+ *   unplug  - n readers; one is unplugged halfway, and the read rate of
+ *             every other reader must hold up
+ *
+ * Usage: ReaderPoolBenchmark [-readers n] [-seconds s] [-rate tags/s per reader]
+ *                            [-efficiency percent]
+ * Exits with status 1 if scaling falls below the efficiency (default 80%)
+ * of linear, or a reader slows to below it while another is unplugged.
+ */
+public class ReaderPoolBenchmark {
+    private final int maxReaders;
+    private final long millis;
+    private final double efficiency;
+
+    public ReaderPoolBenchmark(int maxReaders, long millis, double efficiency) {
+        this.maxReaders = maxReaders;
+        this.millis = millis;
+        this.efficiency = efficiency;
+    }
+
+    /**
+     * Reads and merged detections per second of one run
+     */
+    private static final class Rates {
+        final double readsPerSecond;
+        final double detectionsPerSecond;
+
+        Rates(double readsPerSecond, double detectionsPerSecond) {
+            this.readsPerSecond = readsPerSecond;
+            this.detectionsPerSecond = detectionsPerSecond;
+        }
+    }
+
+    private static List<String> ports(int count) {
+        List<String> ports = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            ports.add("VIRT" + i);
+        }
+        return ports;
+    }
+
+    private static ReaderPool startPool(int readers, LongAdder detections) {
+        ReaderPool pool = new ReaderPool(ports(readers));
+        pool.openAll();
+        pool.configureReaders();
+        pool.startAutoDetection(detection -> detections.increment());
+        return pool;
+    }
+
+    private Rates measure(int readers) throws InterruptedException {
+        LongAdder detections = new LongAdder();
+        LongAdder reads = new LongAdder();
+        ReaderPool pool = startPool(readers, detections);
+        try {
+            pool.addTagReadListener((port, tagId) -> reads.increment());
+            Thread.sleep(millis / 4); // warm up
+            long startReads = reads.sum();
+            long startDetections = detections.sum();
+            long start = System.nanoTime();
+            Thread.sleep(millis);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            return new Rates((reads.sum() - startReads) / seconds, (detections.sum() - startDetections) / seconds);
+        } finally {
+            pool.close();
+        }
+    }
+
+    /**
+     * @return whether aggregate throughput scaled close enough to linear
+     */
+    public boolean scaling() throws InterruptedException {
+        System.out.println(String.format("%-8s %14s %14s %10s", "readers", "reads/s", "detections/s", "scaling"));
+        double single = 0;
+        boolean ok = true;
+        for (int readers = 1; readers <= maxReaders; readers++) {
+            Rates rates = measure(readers);
+            if (readers == 1) {
+                single = rates.readsPerSecond;
+            }
+            double scaling = rates.readsPerSecond / (single * readers);
+            System.out.println(String.format("%-8d %14.0f %14.0f %9.0f%%", readers, rates.readsPerSecond,
+                    rates.detectionsPerSecond, scaling * 100));
+            if (scaling < efficiency) {
+                ok = false;
+            }
+        }
+        return ok;
+    }
+
+    /**
+     * @return whether every other reader kept its read rate while one was unplugged
+     */
+    public boolean unplug() throws InterruptedException {
+        Map<String, AtomicLong> reads = new ConcurrentHashMap<>();
+        LongAdder detections = new LongAdder();
+        ReaderPool pool = startPool(maxReaders, detections);
+        try {
+            for (SerialService reader : pool.getReaders()) {
+                reads.put(reader.getPortName(), new AtomicLong());
+            }
+            pool.addTagReadListener((port, tagId) -> reads.get(port).incrementAndGet());
+            pool.startSupervision();
+            Thread.sleep(millis / 4);
+
+            Map<String, Long> before = rates(reads);
+            SerialService unplugged = pool.getReaders().get(0);
+            ((VirtualReaderTransport) unplugged.getTransport()).unplug();
+            Map<String, Long> after = rates(reads);
+
+            boolean ok = true;
+            System.out.println(String.format("%-8s %14s %14s", "reader", "reads/s before", "reads/s after"));
+            for (SerialService reader : pool.getReaders()) {
+                String port = reader.getPortName();
+                double ratio = (double) after.get(port) / Math.max(1, before.get(port));
+                boolean isUnplugged = reader == unplugged;
+                System.out.println(String.format("%-8s %14d %14d%s", port, before.get(port), after.get(port),
+                        isUnplugged ? "  (unplugged)" : ""));
+                if (!isUnplugged && ratio < efficiency) {
+                    ok = false;
+                }
+            }
+            return ok;
+        } finally {
+            pool.close();
+        }
+    }
+
+    private Map<String, Long> rates(Map<String, AtomicLong> reads) throws InterruptedException {
+        Map<String, Long> start = new ConcurrentHashMap<>();
+        reads.forEach((port, count) -> start.put(port, count.get()));
+        long began = System.nanoTime();
+        Thread.sleep(millis / 2);
+        double seconds = (System.nanoTime() - began) / 1e9;
+        Map<String, Long> rates = new ConcurrentHashMap<>();
+        reads.forEach((port, count) -> rates.put(port, Math.round((count.get() - start.get(port)) / seconds)));
+        return rates;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int readers = 4;
+        double seconds = 2;
+        double rate = 20000;
+        double efficiency = 0.80;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-readers":
+                    readers = Integer.parseInt(args[++i]);
+                    break;
+                case "-seconds":
+                    seconds = Double.parseDouble(args[++i]);
+                    break;
+                case "-rate":
+                    rate = Double.parseDouble(args[++i]);
+                    break;
+                case "-efficiency":
+                    efficiency = Double.parseDouble(args[++i]) / 100;
+                    break;
+                default:
+                    System.err.println("Unknown argument: " + args[i]);
+                    System.exit(2);
+            }
+        }
+
+        AppConfig.load();
+        AppConfig.properties.setProperty("rfid.transport", "virtual");
+        AppConfig.properties.setProperty("rfid.protocol", "ascii");
+        AppConfig.properties.setProperty("rfid.config.cache", "false");
+        AppConfig.properties.setProperty("serial.baudrate.auto", "false");
+        AppConfig.properties.setProperty("metrics.jmx", "false");
+        AppConfig.properties.setProperty("metrics.snapshot.seconds", "0");
+        AppConfig.properties.remove("rfid.capture.dir");
+        AppConfig.properties.setProperty("virtual.tag.rate", String.valueOf(rate));
+        // A large population keeps most reads new tags, so the merged detection stream is loaded too
+        AppConfig.properties.setProperty("virtual.tag.population", "100000");
+        AppConfig.properties.setProperty("virtual.baudrate", "0");
+
+        ReaderPoolBenchmark benchmark = new ReaderPoolBenchmark(readers, (long) (seconds * 1000), efficiency);
+        boolean scaled = benchmark.scaling();
+        System.out.println();
+        boolean isolated = benchmark.unplug();
+
+        if (!scaled) {
+            System.err.println("Aggregate throughput below " + Math.round(efficiency * 100) + "% of linear");
+        }
+        if (!isolated) {
+            System.err.println("A reader slowed below " + Math.round(efficiency * 100) + "% while another was unplugged");
+        }
+        System.exit(scaled && isolated ? 0 : 1);
+    }
+}
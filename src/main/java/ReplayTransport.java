@@ -0,0 +1,215 @@
+package main.java;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays the received side of a {@link CaptureFile} back as if it came
+ * from the reader, at the captured pace, N times faster, or as fast as the
+ * host takes it (speed 0).
+ *
+ * Unlike a real port nothing is ever dropped: when the host falls behind,
+ * playback waits, so every run over the same capture delivers the same
+ * bytes in the same chunks. Bytes the host writes are counted and
+ * otherwise ignored; replies come from the capture, not from the commands.
+ */
+public class ReplayTransport implements Transport {
+    private static final int RX_CAPACITY = 1 << 16;
+
+    private final String name;
+    private final File file;
+    private final double speed;
+
+    private final byte[] rx = new byte[RX_CAPACITY];
+    private int rxHead;
+    private int rxCount;
+
+    private volatile Runnable dataListener;
+    private volatile boolean open;
+    private Thread playback;
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private volatile long bytesReplayed;
+    private volatile long bytesWritten;
+
+    /**
+     * @param speed 1 for real time, N for N times faster, 0 for as fast as possible
+     */
+    public ReplayTransport(String name, File file, double speed) {
+        this.name = name;
+        this.file = file;
+        this.speed = speed;
+    }
+
+    /**
+     * Replay of "replay.file.&lt;port&gt;" (or "replay.file") at "replay.speed"
+     * (a factor, or "max")
+     */
+    public static ReplayTransport fromProperties(String name) {
+        String path = AppConfig.properties.getProperty("replay.file." + name,
+                AppConfig.properties.getProperty("replay.file", name + ".cap"));
+        String speed = AppConfig.properties.getProperty("replay.speed", "1").trim();
+        return new ReplayTransport(name, new File(path), "max".equalsIgnoreCase(speed) ? 0 : Double.parseDouble(speed));
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public synchronized boolean open() {
+        if (open) {
+            return true;
+        }
+        if (!file.isFile()) {
+            System.err.println("Capture file not found: " + file);
+            return false;
+        }
+        open = true;
+        playback = new Thread(this::play, "replay-" + name);
+        playback.setDaemon(true);
+        playback.start();
+        System.out.println("Replaying " + file + " on " + name + " at "
+                + (speed > 0 ? speed + "x" : "maximum speed"));
+        return true;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public synchronized void close() {
+        open = false;
+        if (playback != null) {
+            playback.interrupt();
+            playback = null;
+        }
+        notifyAll();
+    }
+
+    @Override
+    public synchronized int bytesAvailable() {
+        return rxCount;
+    }
+
+    @Override
+    public synchronized int read(byte[] buffer, int offset, int length) {
+        int n = Math.min(length, rxCount);
+        for (int i = 0; i < n; i++) {
+            buffer[offset + i] = rx[(rxHead + i) & (RX_CAPACITY - 1)];
+        }
+        rxHead = (rxHead + n) & (RX_CAPACITY - 1);
+        rxCount -= n;
+        if (n > 0) {
+            notifyAll(); // room for playback again
+        }
+        return n;
+    }
+
+    @Override
+    public int write(byte[] data, int length) {
+        if (!open) {
+            return -1;
+        }
+        bytesWritten += length;
+        return length;
+    }
+
+    @Override
+    public boolean setDataListener(Runnable onDataAvailable) {
+        this.dataListener = onDataAvailable;
+        return true;
+    }
+
+    /**
+     * Wait until the whole capture has been delivered
+     * @return false on timeout
+     */
+    public boolean awaitFinished(long timeout, TimeUnit unit) throws InterruptedException {
+        return finished.await(timeout, unit);
+    }
+
+    /**
+     * Wait until the host has also read everything that was delivered
+     * @return false on timeout
+     */
+    public boolean awaitDrained(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        if (!finished.await(timeout, unit)) {
+            return false;
+        }
+        synchronized (this) {
+            while (rxCount > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        }
+        return true;
+    }
+
+    public long getBytesReplayed() {
+        return bytesReplayed;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    private void play() {
+        try (CaptureFile.Reader capture = new CaptureFile.Reader(file)) {
+            long start = System.nanoTime();
+            while (open && capture.next()) {
+                if (capture.getDirection() != CaptureFile.READ) {
+                    continue;
+                }
+                if (speed > 0) {
+                    long due = start + (long) (capture.getNanos() / speed);
+                    long wait;
+                    while ((wait = due - System.nanoTime()) > 0 && open) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
+                deliver(capture.getData(), capture.getLength());
+            }
+        } catch (IOException e) {
+            System.err.println("Replay of " + file + " stopped: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            finished.countDown();
+            System.out.println("Replay of " + file + " finished (" + bytesReplayed + " bytes)");
+        }
+    }
+
+    private void deliver(byte[] data, int length) throws InterruptedException {
+        int offset = 0;
+        while (offset < length && open) {
+            int n;
+            synchronized (this) {
+                while (rxCount == RX_CAPACITY && open) {
+                    wait(); // the host is behind; wait rather than drop
+                }
+                n = Math.min(length - offset, RX_CAPACITY - rxCount);
+                for (int i = 0; i < n; i++) {
+                    rx[(rxHead + rxCount + i) & (RX_CAPACITY - 1)] = data[offset + i];
+                }
+                rxCount += n;
+            }
+            offset += n;
+            bytesReplayed += n;
+
+            Runnable listener = dataListener;
+            if (listener != null) {
+                listener.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package main.java;
+
+/**
+ * Reply frame from the reader to a command sent with
+ * {@link SerialService#sendCommandAsync(String, long)}
+ */
+public class Response {
+    private final String command;
+    private final String body;
+    private final long roundTripNanos;
+
+    public Response(String command, String body, long roundTripNanos) {
+        this.command = command;
+        this.body = body;
+        this.roundTripNanos = roundTripNanos;
+    }
+
+    /**
+     * Name of the command this is a reply to, e.g. STATUS or SET_POWER
+     */
+    public String getCommand() {
+        return command;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public long getRoundTripNanos() {
+        return roundTripNanos;
+    }
+
+    public long getRoundTripMillis() {
+        return roundTripNanos / 1000000L;
+    }
+
+    public boolean isError() {
+        return body.startsWith("ERR");
+    }
+
+    @Override
+    public String toString() {
+        return body;
+    }
+}
@@ -1,171 +1,621 @@
 package main.java;
 
-import com.fazecast.jSerialComm.SerialPort;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 public class SerialService {
-    private SerialPort port;
-    private ExecutorService executorService;
+    // A tag is considered gone once it hasn't been read for this long (rfid.tag.ttl.ms)
+    private static final long DEFAULT_TAG_TTL_MS = 500;
+    private static final long IDLE_CHECK_INTERVAL_MS = 100;
+    // Buffered bytes with no terminator are taken as a frame after this much line silence
+    private static final long FRAME_IDLE_MS = 50;
+    private static final long READ_TIMEOUT_MS = 500;
+    private static final int MAX_FRAME_LENGTH = 256;
+    // readTag() only trusts a report this recent; anything older may be a tag long gone
+    private static final long RECENT_FRAME_MAX_AGE_MS = 200;
+    // Frames handled per inventory task, bounding how long a write can be kept waiting
+    private static final int FRAMES_PER_INVENTORY_TASK = 32;
+
+    private final Transport transport;
+    private final String portName;
+    private ScheduledExecutorService executorService;
     private AtomicBoolean isAutoDetecting = new AtomicBoolean(false);
-    private Consumer<String> tagDetectedCallback;
-    private String lastDetectedTag = "";
+    private volatile Consumer<String> tagDetectedCallback;
+    private final List<Consumer<TagEvent>> tagEventListeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<String>> tagReadListeners = new CopyOnWriteArrayList<>();
+    private final List<BiConsumer<String, Boolean>> writeListeners = new CopyOnWriteArrayList<>();
+    private final List<IntConsumer> baudRateListeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<Boolean>> connectionListeners = new CopyOnWriteArrayList<>();
+    private volatile Consumer<String> connectionLostHandler;
+    private volatile String lastDetectedTag = "";
+    private final TagInventory inventory;
+    private volatile long lastFrameMillis;
+    private volatile long commandTimeoutMillis;
+    
+    // Receive path: the port's data listener wakes the I/O thread, which pulls the
+    // bytes into the protocol codec with reusable buffers; frames are then routed to
+    // pending commands, auto-detection, or the latest report that readTag() waits on.
+    // Codec and buffers are only touched from the I/O thread.
+    private final ProtocolCodec codec = ProtocolCodec.fromProperties(4 * MAX_FRAME_LENGTH);
+    private final ProtocolCodec.Listener frameListener = new FrameListener();
+    private final byte[] eventBuffer = new byte[MAX_FRAME_LENGTH];
+    private final ByteBuffer commandBuffer = ByteBuffer.allocate(MAX_FRAME_LENGTH);
+    // Latest tag report with its arrival time (System.nanoTime); guarded by recentFrameLock
+    private final Object recentFrameLock = new Object();
+    private String recentFrame;
+    private long recentFrameNanos;
+    private long recentFrameCount;
+    
+    // Commands in the order they were written; the reader answers in the same order
+    private final ConcurrentLinkedQueue<PendingCommand> pendingCommands = new ConcurrentLinkedQueue<>();
+    // Writes waiting to see their new ID reported back
+    private final ConcurrentLinkedQueue<TagWatch> tagWatches = new ConcurrentLinkedQueue<>();
+    
+    // The one thread that writes to the port and processes received frames
+    private final IoScheduler ioScheduler;
+    private final AtomicBoolean inventoryScheduled = new AtomicBoolean(false);
+    
+    private final ReaderMetrics metrics;
+    private volatile boolean openedBefore;
+    // Whether this session has checked the saved reader config against the reader
+    private volatile boolean configCacheChecked;
+    // False from a detected port loss until the port is open again
+    private final AtomicBoolean connected = new AtomicBoolean(false);
     
     public SerialService(String portName) {
-        int baudrate = Integer.parseInt(MainApp.properties.getProperty("serial.baudrate"));
-        int dataBits = Integer.parseInt(MainApp.properties.getProperty("serial.databits"));
-        int stopBits = Integer.parseInt(MainApp.properties.getProperty("serial.stopbits"));
-        int parity = Integer.parseInt(MainApp.properties.getProperty("serial.parity"));
-
-        System.out.println("Trying to connect....");
-        System.out.println("Port : " + portName);
-        System.out.println("Baud Rate : " + baudrate);
-        System.out.println("Data Bits : " + dataBits);
-        System.out.println("Stop Bits : " + stopBits);
-        System.out.println("Parity : " + parity);
-
-        port = SerialPort.getCommPort(portName);
-        port.setBaudRate(baudrate);
-        port.setNumDataBits(dataBits);
-        port.setNumStopBits(stopBits);
-        port.setParity(parity);
+        this(Transport.create(portName));
+    }
+
+    public SerialService(Transport transport) {
+        this.transport = transport;
+        this.portName = transport.getName();
+        this.commandTimeoutMillis = Long.parseLong(AppConfig.properties.getProperty("serial.timeout", "1000"));
+        this.inventory = new TagInventory(portName,
+                Long.parseLong(AppConfig.properties.getProperty("rfid.tag.rereport.ms", "0")),
+                Long.parseLong(AppConfig.properties.getProperty("rfid.tag.ttl.ms", String.valueOf(DEFAULT_TAG_TTL_MS))));
+        
+        // Initialize executor service for timers, and the I/O thread that owns the port
+        executorService = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rfid-timer-" + portName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        ioScheduler = new IoScheduler("rfid-io-" + portName);
         
-        // Shorter timeout for auto-detection
-        port.setComPortTimeouts(SerialPort.TIMEOUT_READ_BLOCKING, 500, 500);
+        metrics = new ReaderMetrics(portName);
+        metrics.setIoQueueGauge(ioScheduler::queuedTasks);
+        if (Boolean.parseBoolean(AppConfig.properties.getProperty("metrics.jmx", "true"))) {
+            metrics.register();
+        }
+        long snapshotSeconds = Long.parseLong(AppConfig.properties.getProperty("metrics.snapshot.seconds", "60"));
+        if (snapshotSeconds > 0) {
+            executorService.scheduleAtFixedRate(() -> System.out.println(metrics.snapshot()),
+                    snapshotSeconds, snapshotSeconds, TimeUnit.SECONDS);
+        }
         
-        // Initialize executor service for background tasks
-        executorService = Executors.newSingleThreadExecutor();
+        // Detect unterminated frames and expire tags that are no longer read
+        executorService.scheduleWithFixedDelay(
+                () -> ioScheduler.execute(IoScheduler.Priority.INVENTORY, this::checkLineIdle),
+                IDLE_CHECK_INTERVAL_MS, IDLE_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
 
-        if (port.openPort()) {
-            System.out.println("Serial port opened successfully");
-        } else {
+    /**
+     * Open the port and start receiving. The constructor only prepares the
+     * port, so callers can open it off the UI thread.
+     * @return true if the port is open
+     */
+    public boolean open() {
+        if (transport.isOpen()) {
+            return true;
+        }
+        
+        if (!transport.open()) {
             System.err.println("Failed to open serial port: " + portName);
+            return false;
+        }
+        System.out.println("Serial port opened successfully");
+        if (openedBefore) {
+            metrics.reconnected();
+        }
+        openedBefore = true;
+        
+        if (!transport.setDataListener(this::onDataAvailable)) {
+            System.err.println("Failed to register data listener on port: " + portName);
         }
+        transport.setDisconnectListener(() -> connectionLost("device disconnected"));
+        connected.set(true);
+        return true;
     }
 
-    public String readTag() {
-        byte[] buffer = new byte[64];
-        int len = port.readBytes(buffer, buffer.length);
+    /**
+     * Reopen the port after the connection was lost. Frames already received
+     * are processed first, and the inventory, listeners and auto-detection
+     * state are kept, so nothing queued for the consumers is lost.
+     * Commands still waiting for a reply fail.
+     * @return true if the port is open again
+     */
+    public boolean reopen() {
+        try {
+            ioScheduler.submit(IoScheduler.Priority.INVENTORY, () -> {
+                while (codec.decodeNext(frameListener)) {
+                    metrics.frameReceived();
+                }
+                return null;
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            System.err.println("Error draining " + portName + " before reconnect: " + e.getCause().getMessage());
+        }
+        failPendingCommands("Connection lost: " + portName);
+        
+        transport.setDataListener(null);
+        transport.setDisconnectListener(null);
+        transport.close();
+        return open();
+    }
 
-        if (len <= 0) {
-            return "NO TAG";
+    /**
+     * Mark the connection as lost (read or write errors, disconnect event,
+     * missed heartbeats). Only the first report until the port is reopened
+     * reaches the connection-lost handler and listeners.
+     */
+    public void connectionLost(String reason) {
+        if (!connected.compareAndSet(true, false)) {
+            return;
+        }
+        System.err.println("Connection to reader on " + portName + " lost: " + reason);
+        for (Consumer<Boolean> listener : connectionListeners) {
+            listener.accept(false);
+        }
+        Consumer<String> handler = connectionLostHandler;
+        if (handler != null) {
+            handler.accept(reason);
+        }
+    }
+
+    /**
+     * Called once a lost reader is configured again, with the time it took
+     */
+    public void connectionRestored(long recoveryMillis) {
+        metrics.recovered(recoveryMillis);
+        System.out.println("Reader on " + portName + " recovered in " + recoveryMillis + " ms");
+        for (Consumer<Boolean> listener : connectionListeners) {
+            listener.accept(true);
         }
+    }
 
-        return new String(buffer, 0, len).trim();
+    /**
+     * Who reconnects: told the reason whenever the connection is lost
+     */
+    public void setConnectionLostHandler(Consumer<String> handler) {
+        this.connectionLostHandler = handler;
     }
 
-    public boolean writeTag(String newId) {
-        if (newId == null || newId.isEmpty()) return false;
+    /**
+     * Told false when the connection is lost and true once it is restored
+     */
+    public void addConnectionListener(Consumer<Boolean> listener) {
+        connectionListeners.add(listener);
+    }
 
-        // Stop auto-detection during write operation
-        boolean wasAutoDetecting = isAutoDetecting.get();
-        if (wasAutoDetecting) {
-            stopAutoDetection();
+    public boolean isConnected() {
+        return connected.get();
+    }
+
+    /**
+     * When bytes last arrived from the reader
+     */
+    public long getLastReceiveMillis() {
+        return lastFrameMillis;
+    }
+
+    /**
+     * Read the tag in the field: the latest report if it arrived within the
+     * last RECENT_FRAME_MAX_AGE_MS, otherwise the next one, waiting up to the
+     * read timeout. Older reports are never returned.
+     */
+    public String readTag() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(READ_TIMEOUT_MS);
+        synchronized (recentFrameLock) {
+            if (recentFrame != null
+                    && System.nanoTime() - recentFrameNanos <= TimeUnit.MILLISECONDS.toNanos(RECENT_FRAME_MAX_AGE_MS)) {
+                return recentFrame;
+            }
+            long seen = recentFrameCount;
+            try {
+                long remaining;
+                while (recentFrameCount == seen && (remaining = deadline - System.nanoTime()) > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(recentFrameLock, remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (recentFrameCount != seen) {
+                return recentFrame;
+            }
         }
+        metrics.emptyRead();
+        return "NO TAG";
+    }
+
+    /**
+     * Move waiting bytes from the port into the codec, never more than it can
+     * hold; anything left stays in the port's buffer until the next pass
+     * @return true if any bytes were read
+     */
+    private boolean fillDecoder() {
+        int available = transport.bytesAvailable();
+        if (available < 0) {
+            connectionLost("port not readable");
+            return false;
+        }
+        int space = Math.min(codec.free(), eventBuffer.length);
+        if (available == 0 || space <= 0) {
+            return false;
+        }
+        
+        int len = transport.read(eventBuffer, 0, Math.min(available, space));
+        if (len < 0) {
+            connectionLost("read error");
+            return false;
+        }
+        if (len == 0) {
+            return false;
+        }
+        lastFrameMillis = System.currentTimeMillis();
+        codec.receive(eventBuffer, 0, len);
+        return true;
+    }
+
+    public boolean writeTag(String newId) {
+        if (newId == null || newId.isEmpty()) return false;
 
         try {
-            // DB02UHF specific write command format
-            // You may need to adjust this based on your reader's protocol
-            String writeCommand = constructWriteCommand(newId);
-            byte[] data = writeCommand.getBytes();
-            int bytesWritten = port.writeBytes(data, data.length);
-            
-            // Wait for write confirmation
-            Thread.sleep(100);
-            
-            // Verify write operation
-            String verification = readTag();
-            boolean success = verification.equals(newId);
-            
-            return success && bytesWritten > 0;
+            return writeTagAsync(newId).get();
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             return false;
-        } finally {
-            // Restart auto-detection if it was running
-            if (wasAutoDetecting) {
-                startAutoDetection(tagDetectedCallback);
-            }
+        } catch (ExecutionException e) {
+            return false;
         }
     }
+
+    /**
+     * Write a new ID to the tag in the field without stopping auto-detection.
+     * The write jumps ahead of queued inventory work on the I/O thread, and
+     * succeeds once the reader confirms it: either the reply itself is the new
+     * ID, or the reader acknowledges and then reports the new ID.
+     */
+    public CompletableFuture<Boolean> writeTagAsync(String newId) {
+        if (newId == null || newId.isEmpty()) {
+            return CompletableFuture.completedFuture(false);
+        }
+        
+        // Watch for the new ID before writing so a fast report isn't missed
+        CompletableFuture<String> reported = awaitTag(newId, commandTimeoutMillis);
+        
+        String writeCommand = constructWriteCommand(newId);
+        
+        return sendCommandAsync(writeCommand, commandTimeoutMillis, IoScheduler.Priority.WRITE, newId)
+                .thenCompose(response -> {
+                    if (response.getBody().equals(newId)) {
+                        reported.cancel(false);
+                        return CompletableFuture.completedFuture(true);
+                    }
+                    if (response.isError()) {
+                        reported.cancel(false);
+                        return CompletableFuture.completedFuture(false);
+                    }
+                    return reported.thenApply(tag -> true);
+                })
+                .exceptionally(error -> {
+                    reported.cancel(false);
+                    return false;
+                })
+                .whenComplete((verified, error) -> {
+                    boolean ok = Boolean.TRUE.equals(verified);
+                    metrics.writeCompleted(ok);
+                    for (BiConsumer<String, Boolean> listener : writeListeners) {
+                        listener.accept(newId, ok);
+                    }
+                });
+    }
+
+    /**
+     * Complete when the given tag ID is next reported by the reader
+     */
+    private CompletableFuture<String> awaitTag(String tagId, long timeoutMillis) {
+        TagWatch watch = new TagWatch(tagId);
+        tagWatches.add(watch);
+        
+        ScheduledFuture<?> timeout = executorService.schedule(() -> {
+            if (tagWatches.remove(watch)) {
+                watch.future.completeExceptionally(new TimeoutException("Tag " + tagId + " not reported"));
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        watch.future.whenComplete((tag, error) -> {
+            timeout.cancel(false);
+            tagWatches.remove(watch);
+        });
+        
+        return watch.future;
+    }
     
     /**
-     * Construct write command for DB02UHF reader
-     * This is a placeholder - adjust according to your reader's protocol
+     * Construct write command for DB02UHF reader; the codec puts it on the wire
      */
     private String constructWriteCommand(String tagId) {
-        // Example format for UHF readers - modify as needed
-        // Format: [Command][Length][Data][Checksum]
-        return "WRITE:" + tagId + "\r\n";
+        return "WRITE:" + tagId;
     }
 
     /**
-     * Start auto-detection of RFID tags
+     * Start auto-detection of RFID tags.
+     * Frames are delivered from the port's data-available event as soon as
+     * their bytes arrive, instead of polling the port on a fixed interval.
      * @param callback Function to call when a tag is detected
      */
     public void startAutoDetection(Consumer<String> callback) {
-        if (isAutoDetecting.get()) {
+        if (!isAutoDetecting.compareAndSet(false, true)) {
             return; // Already running
         }
         
         this.tagDetectedCallback = callback;
-        isAutoDetecting.set(true);
+        lastFrameMillis = System.currentTimeMillis();
         
-        CompletableFuture.runAsync(() -> {
-            System.out.println("Auto-detection started");
-            
-            while (isAutoDetecting.get()) {
-                try {
-                    String detectedTag = readTag();
-                    
-                    if (detectedTag != null && !detectedTag.equals("NO TAG") && 
-                        !detectedTag.trim().isEmpty()) {
-                        
-                        // Only trigger callback if it's a new tag or first detection
-                        if (!detectedTag.equals(lastDetectedTag)) {
-                            lastDetectedTag = detectedTag;
-                            
-                            if (callback != null) {
-                                callback.accept(detectedTag.trim());
-                            }
-                            
-                            System.out.println("Auto-detected tag: " + detectedTag.trim());
-                        }
-                    } else {
-                        // Clear last detected tag when no tag is present
-                        if (!lastDetectedTag.isEmpty()) {
-                            lastDetectedTag = "";
-                            System.out.println("Tag removed from detection range");
-                        }
-                    }
-                    
-                    // Small delay to prevent excessive CPU usage
-                    Thread.sleep(200);
-                    
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
+        System.out.println("Auto-detection started");
+    }
+
+    /**
+     * Called on the transport's thread whenever bytes are waiting on the port.
+     * Only wakes the I/O thread, which reads and processes the bytes.
+     */
+    private void onDataAvailable() {
+        scheduleInventory();
+    }
+
+    private void scheduleInventory() {
+        if (inventoryScheduled.compareAndSet(false, true)) {
+            ioScheduler.execute(IoScheduler.Priority.INVENTORY, this::processFrames);
+        }
+    }
+
+    /**
+     * Inventory task on the I/O thread. Handles a bounded batch of frames and
+     * requeues itself, so writes and commands queued meanwhile go first.
+     */
+    private void processFrames() {
+        inventoryScheduled.set(false);
+        
+        int handled = 0;
+        try {
+            while (handled < FRAMES_PER_INVENTORY_TASK) {
+                if (codec.decodeNext(frameListener)) {
+                    metrics.frameReceived();
+                    handled++;
+                } else if (!fillDecoder()) {
                     break;
-                } catch (Exception e) {
-                    System.err.println("Error during auto-detection: " + e.getMessage());
-                    // Continue running unless interrupted
                 }
             }
-            
-            System.out.println("Auto-detection stopped");
-        }, executorService);
+        } catch (Exception e) {
+            System.err.println("Error during auto-detection: " + e.getMessage());
+        }
+        
+        if (handled == FRAMES_PER_INVENTORY_TASK) {
+            scheduleInventory();
+        }
+    }
+
+    /**
+     * Codec callbacks, on the I/O thread
+     */
+    private final class FrameListener implements ProtocolCodec.Listener {
+        @Override
+        public void onFrame(String frame) {
+            SerialService.this.onFrame(frame);
+        }
+
+        @Override
+        public void onReply(String keyword, String body) {
+            // Replies name their command, so they can't be mistaken for tags
+            for (PendingCommand pending : pendingCommands) {
+                if (pending.keyword.equals(keyword) && pendingCommands.remove(pending)) {
+                    metrics.commandCompleted(pending.complete(body));
+                    return;
+                }
+            }
+            System.err.println("Unexpected " + keyword + " reply from " + portName + ": " + body);
+        }
+
+        @Override
+        public void onTag(String tagId) {
+            onTagReport(tagId);
+        }
+
+        @Override
+        public void onDecodeError(String reason) {
+            metrics.decodeError();
+        }
+    }
+
+    /**
+     * Route an unclassified frame: the oldest pending command gets its reply,
+     * everything else is a tag report
+     */
+    private void onFrame(String frame) {
+        PendingCommand pending = pendingCommands.peek();
+        if (pending != null && (!isAutoDetecting.get() || looksLikeResponse(frame, pending))
+                && pendingCommands.remove(pending)) {
+            metrics.commandCompleted(pending.complete(frame));
+            return;
+        }
+        onTagReport(frame);
+    }
+
+    private void onTagReport(String frame) {
+        metrics.tagRead();
+        
+        for (TagWatch watch : tagWatches) {
+            if (watch.tagId.equals(frame) && tagWatches.remove(watch)) {
+                watch.future.complete(frame);
+            }
+        }
+        
+        // Only the latest report is kept for readTag()
+        synchronized (recentFrameLock) {
+            recentFrame = frame;
+            recentFrameNanos = System.nanoTime();
+            recentFrameCount++;
+            recentFrameLock.notifyAll();
+        }
+        
+        if (isAutoDetecting.get()) {
+            onTagFrame(frame);
+        }
+    }
+
+    /**
+     * While continuous inventory is running, tag reports and command replies
+     * share the line. Tag reports are plain EPC tokens; replies start with
+     * OK/ERR or the command name, or contain separators a tag ID never has.
+     */
+    private static boolean looksLikeResponse(String frame, PendingCommand pending) {
+        if (frame.startsWith("OK") || frame.startsWith("ERR") || frame.startsWith(pending.keyword)
+                || frame.equals(pending.expectedReply)) {
+            return true;
+        }
+        for (int i = 0; i < frame.length(); i++) {
+            char c = frame.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '-' && c != '_') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void onTagFrame(String detectedTag) {
+        lastDetectedTag = detectedTag;
+        for (Consumer<String> listener : tagReadListeners) {
+            try {
+                listener.accept(detectedTag);
+            } catch (Exception e) {
+                System.err.println("Error in tag read listener: " + e.getMessage());
+            }
+        }
+        
+        // Only trigger callback when the tag enters the field or is due for a re-report
+        TagEvent event = inventory.onRead(detectedTag, System.currentTimeMillis());
+        if (event == null) {
+            return;
+        }
+        
+        Consumer<String> callback = tagDetectedCallback;
+        if (callback != null) {
+            try {
+                callback.accept(detectedTag);
+            } catch (Exception e) {
+                System.err.println("Error in tag detected callback: " + e.getMessage());
+            }
+        }
+        publish(event);
+        
+        if (event.getType() == TagEvent.Type.ENTER) {
+            System.out.println("Auto-detected tag: " + detectedTag);
+        }
+    }
+
+    private void publish(TagEvent event) {
+        for (Consumer<TagEvent> listener : tagEventListeners) {
+            try {
+                listener.accept(event);
+            } catch (Exception e) {
+                System.err.println("Error in tag event listener: " + e.getMessage());
+            }
+        }
+    }
+
+    private void checkLineIdle() {
+        long idle = System.currentTimeMillis() - lastFrameMillis;
+        
+        if (idle >= FRAME_IDLE_MS && codec.flushPartial(frameListener)) {
+            metrics.frameReceived();
+        }
+        
+        // Tags can't be read while the reader is away; don't report them as gone
+        if (!isAutoDetecting.get() || !connected.get()) {
+            return;
+        }
+        for (TagEvent exit : inventory.expire(System.currentTimeMillis())) {
+            publish(exit);
+            System.out.println("Tag removed from detection range: " + exit.getTagId());
+        }
+        if (inventory.size() == 0) {
+            lastDetectedTag = "";
+        }
     }
 
     /**
      * Stop auto-detection
      */
     public void stopAutoDetection() {
-        isAutoDetecting.set(false);
+        if (isAutoDetecting.compareAndSet(true, false)) {
+            System.out.println("Auto-detection stopped");
+        }
+        inventory.clear();
         lastDetectedTag = "";
     }
 
+    /**
+     * Receive ENTER/REPORT/EXIT presence events while auto-detection runs
+     */
+    public void addTagEventListener(Consumer<TagEvent> listener) {
+        tagEventListeners.add(listener);
+    }
+
+    public void removeTagEventListener(Consumer<TagEvent> listener) {
+        tagEventListeners.remove(listener);
+    }
+
+    /**
+     * Told the tag ID of every read while auto-detection runs, duplicates
+     * included, on the I/O thread; the listener must be quick and not block
+     */
+    public void addTagReadListener(Consumer<String> listener) {
+        tagReadListeners.add(listener);
+    }
+
+    public void removeTagReadListener(Consumer<String> listener) {
+        tagReadListeners.remove(listener);
+    }
+
+    /**
+     * Told the new ID and whether it was verified after every tag write
+     */
+    public void addWriteListener(BiConsumer<String, Boolean> listener) {
+        writeListeners.add(listener);
+    }
+
+    public TagInventory getInventory() {
+        return inventory;
+    }
+
     /**
      * Check if auto-detection is currently running
      */
@@ -173,6 +623,72 @@ public class SerialService {
         return isAutoDetecting.get();
     }
 
+    public Transport getTransport() {
+        return transport;
+    }
+
+    public String getPortName() {
+        return portName;
+    }
+
+    public boolean isOpen() {
+        return transport.isOpen();
+    }
+
+    public ReaderMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Line speed of the port, 0 for transports without one
+     */
+    public int getBaudRate() {
+        return transport.getBaudRate();
+    }
+
+    /**
+     * Told the new line speed whenever the port's baud rate changes
+     */
+    public void addBaudRateListener(IntConsumer listener) {
+        baudRateListeners.add(listener);
+    }
+
+    /**
+     * Switch only the port's side of the line, e.g. while looking for the reader's rate
+     * @return false if the transport refused the rate
+     */
+    public boolean setPortBaudRate(int baudRate) {
+        if (!transport.setBaudRate(baudRate)) {
+            return false;
+        }
+        for (IntConsumer listener : baudRateListeners) {
+            listener.accept(baudRate);
+        }
+        return true;
+    }
+
+    /**
+     * Ask the reader to switch to a new line speed and follow it with the
+     * port. The port switches on the I/O thread as the reader's OK is handled,
+     * so no other command goes out between the two.
+     * @return true once both sides run at the new rate, false if the reader refused it
+     */
+    public CompletableFuture<Boolean> changeBaudRate(int baudRate) {
+        return sendCommandAsync("SET_BAUD:" + baudRate, commandTimeoutMillis)
+                .thenApply(response -> !response.isError() && setPortBaudRate(baudRate));
+    }
+
+    public long getCommandTimeout() {
+        return commandTimeoutMillis;
+    }
+
+    /**
+     * Timeout for commands sent from now on, e.g. after the settings were reloaded
+     */
+    public void setCommandTimeout(long timeoutMillis) {
+        this.commandTimeoutMillis = timeoutMillis;
+    }
+
     /**
      * Get the last detected tag without triggering a new read
      */
@@ -186,25 +702,78 @@ public class SerialService {
      */
     public String sendCommand(String command) {
         try {
-            byte[] cmdBytes = command.getBytes();
-            port.writeBytes(cmdBytes, cmdBytes.length);
-            
-            // Wait for response
-            Thread.sleep(100);
-            
-            byte[] buffer = new byte[256];
-            int len = port.readBytes(buffer, buffer.length);
-            
-            if (len > 0) {
-                return new String(buffer, 0, len).trim();
-            }
-            
-            return "NO RESPONSE";
-            
+            return sendCommandAsync(command, commandTimeoutMillis).get().getBody();
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             return "INTERRUPTED";
+        } catch (ExecutionException e) {
+            return "NO RESPONSE";
+        }
+    }
+
+    /**
+     * Send a configuration command without waiting for the reply.
+     * Several commands may be in flight; replies are matched to commands in
+     * the order they were sent. The future completes as soon as the reply
+     * frame arrives, or exceptionally with a TimeoutException.
+     */
+    public CompletableFuture<Response> sendCommandAsync(String command, long timeoutMillis) {
+        return sendCommandAsync(command, timeoutMillis, IoScheduler.Priority.CONFIG);
+    }
+
+    /**
+     * Send a command at the given I/O priority; the command is written from
+     * the port's I/O thread ahead of any lower-priority queued work
+     */
+    public CompletableFuture<Response> sendCommandAsync(String command, long timeoutMillis,
+                                                       IoScheduler.Priority priority) {
+        return sendCommandAsync(command, timeoutMillis, priority, null);
+    }
+
+    private CompletableFuture<Response> sendCommandAsync(String command, long timeoutMillis,
+                                                        IoScheduler.Priority priority, String expectedReply) {
+        PendingCommand pending = new PendingCommand(command, expectedReply);
+        
+        ioScheduler.submit(priority, () -> writeCommand(pending, command, timeoutMillis))
+                .whenComplete((written, error) -> {
+                    if (error != null) {
+                        pending.future.completeExceptionally(error);
+                    }
+                });
+        return pending.future;
+    }
+
+    /**
+     * Runs on the I/O thread
+     */
+    private Void writeCommand(PendingCommand pending, String command, long timeoutMillis) {
+        try {
+            codec.encodeCommand(pending.keyword, pending.argument, commandBuffer);
+        } catch (IllegalArgumentException | BufferOverflowException e) {
+            pending.future.completeExceptionally(new IllegalArgumentException(
+                    "Cannot send " + command.trim() + " in the " + codec.getName() + " protocol: " + e.getMessage(), e));
+            return null;
         }
+        
+        pending.sentNanos = System.nanoTime();
+        pendingCommands.add(pending);
+        metrics.commandSent();
+        if (transport.write(commandBuffer.array(), commandBuffer.limit()) < 0) {
+            pendingCommands.remove(pending);
+            pending.future.completeExceptionally(new IllegalStateException("Failed to write to port " + portName));
+            connectionLost("write error");
+            return null;
+        }
+        
+        ScheduledFuture<?> timeout = executorService.schedule(() -> {
+            if (pendingCommands.remove(pending)) {
+                metrics.commandTimedOut();
+                pending.future.completeExceptionally(new TimeoutException(
+                        "No response to " + pending.keyword + " within " + timeoutMillis + " ms"));
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        pending.future.whenComplete((response, error) -> timeout.cancel(false));
+        return null;
     }
 
     /**
@@ -212,26 +781,120 @@ public class SerialService {
      * DB02UHF specific settings
      */
     public void configureReader() {
+        // Example configuration commands for DB02UHF
+        // Adjust these based on your reader's manual
+        Map<String, String> settings = new LinkedHashMap<>();
+        // Set read power (example: maximum power)
+        settings.put("SET_POWER", AppConfig.properties.getProperty("rfid.power", "30"));
+        // Set frequency region (example: US band)
+        settings.put("SET_REGION", AppConfig.properties.getProperty("rfid.region", "US"));
+        // Enable continuous inventory mode
+        settings.put("SET_MODE", AppConfig.properties.getProperty("rfid.mode", "CONTINUOUS"));
+        
+        // Only send what differs from the last configuration this reader accepted
+        ReaderConfigCache cache = ReaderConfigCache.getInstance();
+        boolean useCache = Boolean.parseBoolean(AppConfig.properties.getProperty("rfid.config.cache", "true"));
+        if (useCache && !configCacheChecked) {
+            configCacheChecked = true;
+            String mode = settings.get("SET_MODE");
+            if (cache.isApplied(portName, "SET_MODE", mode) && !reportsMode(mode)) {
+                // Saved by an earlier run, but the reader lost it (e.g. power cycled while the app was closed)
+                System.out.println("Reader on " + portName + " is not in " + mode + " mode, re-sending all settings");
+                cache.invalidate(portName);
+            }
+        }
+        Map<String, CompletableFuture<Response>> replies = new LinkedHashMap<>();
+        for (Map.Entry<String, String> setting : settings.entrySet()) {
+            if (!useCache || !cache.isApplied(portName, setting.getKey(), setting.getValue())) {
+                // The commands are pipelined; each completes on its own reply
+                replies.put(setting.getKey(), sendCommandAsync(
+                        setting.getKey() + ":" + setting.getValue(), commandTimeoutMillis));
+            }
+        }
+        
+        int applied = 0;
+        for (Map.Entry<String, CompletableFuture<Response>> reply : replies.entrySet()) {
+            try {
+                Response response = reply.getValue().get();
+                if (!response.isError()) {
+                    cache.markApplied(portName, reply.getKey(), settings.get(reply.getKey()));
+                    applied++;
+                } else {
+                    System.err.println("Reader rejected " + reply.getKey() + ": " + response);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                System.err.println("Reader configuration incomplete: " + e.getCause().getMessage());
+            }
+        }
+        if (applied > 0) {
+            cache.save();
+        }
+        
+        System.out.println("Reader configured for optimal detection (" + replies.size() + " sent, "
+                + (settings.size() - replies.size()) + " unchanged)");
+    }
+
+    /**
+     * Whether the reader's STATUS reply names the given mode; a reader that
+     * doesn't answer, or doesn't say, counts as not in it
+     */
+    private boolean reportsMode(String mode) {
         try {
-            // Example configuration commands for DB02UHF
-            // Adjust these based on your reader's manual
-            
-            // Set read power (example: maximum power)
-            sendCommand("SET_POWER:30\r\n");
-            Thread.sleep(50);
-            
-            // Set frequency region (example: US band)
-            sendCommand("SET_REGION:US\r\n");
-            Thread.sleep(50);
-            
-            // Enable continuous inventory mode
-            sendCommand("SET_MODE:CONTINUOUS\r\n");
-            Thread.sleep(50);
-            
-            System.out.println("Reader configured for optimal detection");
-            
+            Response status = sendCommandAsync("STATUS", commandTimeoutMillis).get();
+            if (status.isError()) {
+                return false;
+            }
+            for (String word : status.getBody().toUpperCase().split("[^A-Z0-9_]+")) {
+                if (word.equals(mode.toUpperCase())) {
+                    return true;
+                }
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("Reader status unavailable: " + e.getCause().getMessage());
+        }
+        return false;
+    }
+
+    private static final class PendingCommand {
+        final String keyword;
+        final String argument;
+        final String expectedReply;
+        long sentNanos;
+        final CompletableFuture<Response> future = new CompletableFuture<>();
+
+        PendingCommand(String command, String expectedReply) {
+            String trimmed = command.trim();
+            int colon = trimmed.indexOf(':');
+            this.keyword = colon >= 0 ? trimmed.substring(0, colon) : trimmed;
+            this.argument = colon >= 0 ? trimmed.substring(colon + 1) : "";
+            this.expectedReply = expectedReply;
+        }
+
+        Response complete(String body) {
+            Response response = new Response(keyword, body, System.nanoTime() - sentNanos);
+            future.complete(response);
+            return response;
+        }
+    }
+
+    private static final class TagWatch {
+        final String tagId;
+        final CompletableFuture<String> future = new CompletableFuture<>();
+
+        TagWatch(String tagId) {
+            this.tagId = tagId;
+        }
+    }
+
+    private void failPendingCommands(String reason) {
+        PendingCommand pending;
+        while ((pending = pendingCommands.poll()) != null) {
+            pending.future.completeExceptionally(new IllegalStateException(reason));
         }
     }
 
@@ -240,15 +903,21 @@ public class SerialService {
             // Stop auto-detection before closing
             stopAutoDetection();
             
-            // Shutdown executor service
+            // Fail commands that will never get their reply
+            connected.set(false);
+            failPendingCommands("Port closed: " + portName);
+            
+            // Shutdown executor service and the I/O thread
             if (executorService != null && !executorService.isShutdown()) {
                 executorService.shutdown();
             }
+            ioScheduler.shutdown();
+            metrics.unregister();
             
             // Close serial port
-            if (port != null) {
-                port.closePort();
-            }
+            transport.setDataListener(null);
+            transport.setDisconnectListener(null);
+            transport.close();
             
             System.out.println("Serial service closed successfully");
             
@@ -0,0 +1,130 @@
+package main.java;
+
+import com.fazecast.jSerialComm.SerialPort;
+import com.fazecast.jSerialComm.SerialPortDataListener;
+import com.fazecast.jSerialComm.SerialPortEvent;
+
+/**
+ * Transport over a physical serial port (jSerialComm), configured from the
+ * serial.* properties
+ */
+public class SerialTransport implements Transport {
+    private final SerialPort port;
+    private final String portName;
+    private volatile Runnable dataListener;
+    private volatile Runnable disconnectListener;
+
+    public SerialTransport(String portName) {
+        int baudrate = Integer.parseInt(AppConfig.properties.getProperty("serial.baudrate"));
+        int dataBits = Integer.parseInt(AppConfig.properties.getProperty("serial.databits"));
+        int stopBits = Integer.parseInt(AppConfig.properties.getProperty("serial.stopbits"));
+        int parity = Integer.parseInt(AppConfig.properties.getProperty("serial.parity"));
+
+        this.portName = portName;
+
+        System.out.println("Trying to connect....");
+        System.out.println("Port : " + portName);
+        System.out.println("Baud Rate : " + baudrate);
+        System.out.println("Data Bits : " + dataBits);
+        System.out.println("Stop Bits : " + stopBits);
+        System.out.println("Parity : " + parity);
+
+        port = SerialPort.getCommPort(portName);
+        port.setBaudRate(baudrate);
+        port.setNumDataBits(dataBits);
+        port.setNumStopBits(stopBits);
+        port.setParity(parity);
+
+        // Reads only take what has already arrived; the frame decoder reassembles partial frames
+        port.setComPortTimeouts(SerialPort.TIMEOUT_NONBLOCKING, 0, 500);
+    }
+
+    @Override
+    public String getName() {
+        return portName;
+    }
+
+    @Override
+    public boolean open() {
+        return port.openPort();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return port.isOpen();
+    }
+
+    @Override
+    public void close() {
+        port.removeDataListener();
+        port.closePort();
+    }
+
+    @Override
+    public int bytesAvailable() {
+        return port.bytesAvailable();
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+        return port.readBytes(buffer, length, offset);
+    }
+
+    @Override
+    public int write(byte[] data, int length) {
+        return port.writeBytes(data, length);
+    }
+
+    @Override
+    public int getBaudRate() {
+        return port.getBaudRate();
+    }
+
+    @Override
+    public boolean setBaudRate(int baudRate) {
+        // jSerialComm reconfigures an open port in place
+        return port.setBaudRate(baudRate);
+    }
+
+    @Override
+    public boolean setDataListener(Runnable onDataAvailable) {
+        this.dataListener = onDataAvailable;
+        return installListener();
+    }
+
+    @Override
+    public boolean setDisconnectListener(Runnable onDisconnect) {
+        this.disconnectListener = onDisconnect;
+        return installListener();
+    }
+
+    /**
+     * jSerialComm takes one listener per port, so both callbacks share it
+     */
+    private synchronized boolean installListener() {
+        port.removeDataListener();
+        Runnable onData = dataListener;
+        Runnable onDisconnect = disconnectListener;
+        if (onData == null && onDisconnect == null) {
+            return true;
+        }
+        int events = (onData != null ? SerialPort.LISTENING_EVENT_DATA_AVAILABLE : 0)
+                | (onDisconnect != null ? SerialPort.LISTENING_EVENT_PORT_DISCONNECTED : 0);
+        return port.addDataListener(new SerialPortDataListener() {
+            @Override
+            public int getListeningEvents() {
+                return events;
+            }
+
+            @Override
+            public void serialEvent(SerialPortEvent event) {
+                if ((event.getEventType() & SerialPort.LISTENING_EVENT_DATA_AVAILABLE) != 0 && onData != null) {
+                    onData.run();
+                }
+                if ((event.getEventType() & SerialPort.LISTENING_EVENT_PORT_DISCONNECTED) != 0 && onDisconnect != null) {
+                    onDisconnect.run();
+                }
+            }
+        });
+    }
+}
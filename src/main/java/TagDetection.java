@@ -0,0 +1,41 @@
+package main.java;
+
+/**
+ * A single tag report, tagged with the reader (port) it came from.
+ * The sequence number gives the order in which detections entered the
+ * aggregated stream across all readers.
+ */
+public class TagDetection {
+    private final long sequence;
+    private final String reader;
+    private final String tagId;
+    private final long timestamp;
+
+    public TagDetection(long sequence, String reader, String tagId, long timestamp) {
+        this.sequence = sequence;
+        this.reader = reader;
+        this.tagId = tagId;
+        this.timestamp = timestamp;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public String getReader() {
+        return reader;
+    }
+
+    public String getTagId() {
+        return tagId;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + sequence + " " + reader + " " + tagId;
+    }
+}
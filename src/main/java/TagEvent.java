@@ -0,0 +1,99 @@
+package main.java;
+
+/**
+ * Presence change of a tag in front of one reader
+ */
+public class TagEvent {
+
+    public enum Type {
+        /** Tag seen for the first time, or again after it had expired */
+        ENTER,
+        /** Tag still present and the re-report window has elapsed */
+        REPORT,
+        /** Tag not seen for longer than the TTL */
+        EXIT
+    }
+
+    private final Type type;
+    private final String tagId;
+    private final String reader;
+    private final long timestamp;
+    private final long dwellMillis;
+
+    public TagEvent(Type type, String tagId, String reader, long timestamp) {
+        this(type, tagId, reader, timestamp, 0);
+    }
+
+    /**
+     * @param dwellMillis for EXIT, how long the tag was in range (first to last read)
+     */
+    public TagEvent(Type type, String tagId, String reader, long timestamp, long dwellMillis) {
+        this.type = type;
+        this.tagId = tagId;
+        this.reader = reader;
+        this.timestamp = timestamp;
+        this.dwellMillis = dwellMillis;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getTagId() {
+        return tagId;
+    }
+
+    public String getReader() {
+        return reader;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Time in range for EXIT events, 0 for the others
+     */
+    public long getDwellMillis() {
+        return dwellMillis;
+    }
+
+    /**
+     * Append this event as one line of JSON (with trailing newline), the
+     * format used by the headless reader and the event server; EXIT events
+     * also carry "dwell" in milliseconds
+     */
+    public void appendJson(StringBuilder out, long sequence) {
+        out.append("{\"seq\":").append(sequence)
+                .append(",\"type\":\"").append(type.name())
+                .append("\",\"reader\":");
+        appendJsonString(out, reader);
+        out.append(",\"tag\":");
+        appendJsonString(out, tagId);
+        out.append(",\"ts\":").append(timestamp);
+        if (type == Type.EXIT) {
+            out.append(",\"dwell\":").append(dwellMillis);
+        }
+        out.append("}\n");
+    }
+
+    private static void appendJsonString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.append('\\').append(c);
+            } else if (c < 0x20) {
+                out.append(String.format("\\u%04x", (int) c));
+            } else {
+                out.append(c);
+            }
+        }
+        out.append('"');
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + tagId + " @" + reader;
+    }
+}
@@ -0,0 +1,340 @@
+package main.java;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local TCP server that fans tag events out to any number of subscribers
+ * (MES, label printer, audit log, ...) as newline-delimited JSON, one
+ * event per line in the headless reader's format.
+ *
+ * publish() never blocks: each event is encoded once and offered to a
+ * bounded queue per client, and one selector thread writes the queues out
+ * with non-blocking gathering writes. When a client's queue is full the
+ * overflow policy decides what gives: the new event (drop-newest), the
+ * oldest queued event (drop-oldest), or the client itself (disconnect).
+ * A slow subscriber can therefore never hold up the readers or the others.
+ */
+public class TagEventServer {
+
+    public enum OverflowPolicy {
+        DROP_NEWEST,
+        DROP_OLDEST,
+        DISCONNECT
+    }
+
+    // Buffers handed to one gathering write
+    private static final int MAX_GATHER = 64;
+
+    private final InetSocketAddress address;
+    private final int clientQueueCapacity;
+    private final OverflowPolicy overflowPolicy;
+
+    private final Set<Client> clients = ConcurrentHashMap.newKeySet();
+    // Clients with newly queued events, picked up by the selector thread
+    private final ConcurrentLinkedQueue<Client> ready = new ConcurrentLinkedQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    private volatile boolean running;
+
+    public TagEventServer(InetSocketAddress address, int clientQueueCapacity, OverflowPolicy overflowPolicy) {
+        this.address = address;
+        this.clientQueueCapacity = clientQueueCapacity;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Server configured from the event.server.* properties, or null if it is disabled
+     */
+    public static TagEventServer fromProperties() {
+        if (!Boolean.parseBoolean(AppConfig.properties.getProperty("event.server.enabled", "false"))) {
+            return null;
+        }
+        String policy = AppConfig.properties.getProperty("event.server.overflow", "drop-oldest");
+        return new TagEventServer(
+                new InetSocketAddress(AppConfig.properties.getProperty("event.server.bind", "127.0.0.1"),
+                        Integer.parseInt(AppConfig.properties.getProperty("event.server.port", "7070"))),
+                Integer.parseInt(AppConfig.properties.getProperty("event.server.client.queue", "1024")),
+                OverflowPolicy.valueOf(policy.trim().toUpperCase().replace('-', '_')));
+    }
+
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        running = true;
+        selectorThread = new Thread(this::run, "rfid-event-server");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+        System.out.println("Tag event server listening on " + serverChannel.getLocalAddress()
+                + " (queue " + clientQueueCapacity + " per client, " + overflowPolicy + ")");
+    }
+
+    /**
+     * Send the event to every connected client; safe to call from any thread
+     */
+    public void publish(TagEvent event) {
+        if (clients.isEmpty()) {
+            return;
+        }
+        StringBuilder line = new StringBuilder(128);
+        event.appendJson(line, sequence.incrementAndGet());
+        ByteBuffer encoded = ByteBuffer.wrap(line.toString().getBytes(StandardCharsets.UTF_8));
+
+        boolean wakeUp = false;
+        for (Client client : clients) {
+            // Each client gets its own position over the shared bytes
+            wakeUp |= client.enqueue(encoded.duplicate());
+        }
+        if (wakeUp) {
+            selector.wakeup();
+        }
+    }
+
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    /**
+     * Events not delivered to a client because its queue was full
+     */
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    public int getPort() {
+        return serverChannel != null ? serverChannel.socket().getLocalPort() : -1;
+    }
+
+    public void close() {
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+        }
+        selector.wakeup();
+        try {
+            selectorThread.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("Tag event server stopped");
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select(1000);
+
+                Client client;
+                while ((client = ready.poll()) != null) {
+                    client.scheduled.set(false);
+                    if (client.overflowed) {
+                        disconnect(client, "too slow, queue full");
+                    } else {
+                        flush(client);
+                    }
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Client keyClient = (Client) key.attachment();
+                    if (key.isReadable()) {
+                        readInput(keyClient);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        flush(keyClient);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Tag event server stopped: " + e.getMessage());
+        } finally {
+            // Stop publish() from queuing for a server that no longer writes
+            running = false;
+            for (Client client : clients) {
+                disconnect(client, "server stopped");
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException e) {
+                System.err.println("Error closing tag event server: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Take one pending connection; a failure here only loses that subscriber,
+     * never the server or the others
+     */
+    private void accept() {
+        SocketChannel channel;
+        try {
+            channel = serverChannel.accept();
+        } catch (IOException e) {
+            System.err.println("Error accepting tag event subscriber: " + e.getMessage());
+            return;
+        }
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            Client client = new Client(channel);
+            client.key = channel.register(selector, SelectionKey.OP_READ, client);
+            clients.add(client);
+            System.out.println("Tag event subscriber connected: " + client.name);
+        } catch (IOException e) {
+            // Typically reset by the peer before it could be set up
+            System.err.println("Error setting up tag event subscriber: " + e.getMessage());
+            try {
+                channel.close();
+            } catch (IOException closeError) {
+                // closing anyway
+            }
+        }
+    }
+
+    /**
+     * Subscribers don't send anything; reading only notices when they hang up
+     */
+    private void readInput(Client client) {
+        try {
+            client.inputBuffer.clear();
+            if (client.channel.read(client.inputBuffer) < 0) {
+                disconnect(client, "closed by subscriber");
+            }
+        } catch (IOException e) {
+            disconnect(client, e.getMessage());
+        }
+    }
+
+    /**
+     * Write as much of the client's queue as the socket takes without blocking
+     */
+    private void flush(Client client) {
+        if (!client.key.isValid()) {
+            return;
+        }
+        try {
+            while (true) {
+                if (client.batchStart == client.batchEnd) {
+                    client.batchStart = 0;
+                    client.batchEnd = 0;
+                    ByteBuffer next;
+                    while (client.batchEnd < MAX_GATHER && (next = client.queue.poll()) != null) {
+                        client.batch[client.batchEnd++] = next;
+                    }
+                    if (client.batchEnd == 0) {
+                        client.key.interestOps(SelectionKey.OP_READ);
+                        return;
+                    }
+                }
+
+                client.channel.write(client.batch, client.batchStart, client.batchEnd - client.batchStart);
+                while (client.batchStart < client.batchEnd && !client.batch[client.batchStart].hasRemaining()) {
+                    client.batch[client.batchStart++] = null;
+                }
+                if (client.batchStart < client.batchEnd) {
+                    // Socket buffer full: resume when the subscriber catches up
+                    client.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            disconnect(client, e.getMessage());
+        }
+    }
+
+    private void disconnect(Client client, String reason) {
+        if (!clients.remove(client)) {
+            return;
+        }
+        try {
+            client.key.cancel();
+            client.channel.close();
+        } catch (IOException e) {
+            // closing anyway
+        }
+        System.out.println("Tag event subscriber disconnected: " + client.name + " (" + reason
+                + ", " + client.dropped.get() + " events dropped)");
+    }
+
+    private final class Client {
+        final SocketChannel channel;
+        final String name;
+        final BlockingQueue<ByteBuffer> queue = new ArrayBlockingQueue<>(clientQueueCapacity);
+        final AtomicBoolean scheduled = new AtomicBoolean(false);
+        final AtomicLong dropped = new AtomicLong();
+        volatile boolean overflowed;
+        SelectionKey key;
+
+        // Owned by the selector thread
+        final ByteBuffer[] batch = new ByteBuffer[MAX_GATHER];
+        int batchStart;
+        int batchEnd;
+        final ByteBuffer inputBuffer = ByteBuffer.allocate(256);
+
+        Client(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            this.name = String.valueOf(channel.getRemoteAddress());
+        }
+
+        /**
+         * @return true if the selector must be woken to write this client
+         */
+        boolean enqueue(ByteBuffer data) {
+            if (!queue.offer(data)) {
+                dropped.incrementAndGet();
+                droppedEvents.incrementAndGet();
+                switch (overflowPolicy) {
+                    case DROP_NEWEST:
+                        return false;
+                    case DROP_OLDEST:
+                        queue.poll();
+                        queue.offer(data);
+                        break;
+                    case DISCONNECT:
+                        overflowed = true;
+                        break;
+                }
+            }
+            return scheduled.compareAndSet(false, true) && ready.add(this);
+        }
+    }
+}
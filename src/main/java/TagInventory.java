@@ -0,0 +1,293 @@
+package main.java;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Concurrent presence table of the tags currently in front of one reader.
+ *
+ * Tag IDs are packed into two longs (see {@link EpcCodec}) and stored in
+ * open-addressing primitive arrays, split into independently locked
+ * segments, so tens of thousands of tags cost a few dozen bytes each and
+ * no objects are created for a repeated read. IDs that cannot be packed
+ * fall back to a small per-segment map.
+ *
+ * A read of an unknown tag is an ENTER; a read of a present tag is a
+ * REPORT once the re-report window has elapsed (0 disables re-reports);
+ * a tag not read for the TTL is an EXIT on the next {@link #expire}, so
+ * reads missed within the TTL don't make a tag leave and come back. EXIT
+ * events carry the tag's dwell time, from its first to its last read.
+ *
+ * Expiry doesn't scan the table: each segment keeps a {@link TimingWheel}
+ * with one deadline per present tag, set on ENTER. Reads don't touch the
+ * wheel; when a deadline comes up and the tag was read since, it is simply
+ * scheduled again at last read + TTL. Unpackable IDs in the overflow maps
+ * are few and are still checked one by one.
+ */
+public class TagInventory {
+    private static final int SEGMENTS = 16;
+    private static final int INITIAL_SEGMENT_CAPACITY = 64;
+    private static final long WHEEL_TICK_MILLIS = 10;
+    // Packing scratch per calling thread, so a read allocates nothing for the key
+    private static final ThreadLocal<long[]> PACKED_KEY = ThreadLocal.withInitial(() -> new long[2]);
+
+    private final String reader;
+    private final long reReportMillis;
+    private final long ttlMillis;
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    public TagInventory(String reader, long reReportMillis, long ttlMillis) {
+        this.reader = reader;
+        this.reReportMillis = reReportMillis;
+        this.ttlMillis = ttlMillis;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(INITIAL_SEGMENT_CAPACITY);
+        }
+    }
+
+    /**
+     * Record a read of the tag
+     * @return the ENTER or REPORT event to publish, or null if the read is a duplicate
+     */
+    public TagEvent onRead(String tagId, long now) {
+        long[] key = PACKED_KEY.get();
+        TagEvent.Type type;
+        if (EpcCodec.pack(tagId, key)) {
+            type = segmentFor(key[0], key[1]).read(key[0], key[1], now);
+        } else {
+            type = segments[(tagId.hashCode() & 0x7FFFFFFF) % SEGMENTS].readOverflow(tagId, now);
+        }
+        return type == null ? null : new TagEvent(type, tagId, reader, now);
+    }
+
+    /**
+     * Remove tags not read within the TTL
+     * @return an EXIT event for each removed tag
+     */
+    public List<TagEvent> expire(long now) {
+        List<TagEvent> exits = new ArrayList<>();
+        long cutoff = now - ttlMillis;
+        for (Segment segment : segments) {
+            segment.expire(now, cutoff, exits);
+        }
+        return exits;
+    }
+
+    public boolean contains(String tagId) {
+        long[] key = PACKED_KEY.get();
+        if (EpcCodec.pack(tagId, key)) {
+            return segmentFor(key[0], key[1]).contains(key[0], key[1]);
+        }
+        return segments[(tagId.hashCode() & 0x7FFFFFFF) % SEGMENTS].containsOverflow(tagId);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    private Segment segmentFor(long hi, long lo) {
+        return segments[(int) (mix(hi, lo) >>> 60)];
+    }
+
+    private static long mix(long hi, long lo) {
+        long h = hi * 0x9E3779B97F4A7C15L ^ lo;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private final class Segment implements TimingWheel.Expiry {
+        // keyHi == 0 marks an empty slot; packed keys always have length bits set
+        private long[] keyHi;
+        private long[] keyLo;
+        private long[] lastSeen;
+        private long[] lastReported;
+        private long[] enteredAt;
+        private int size;
+        // { last seen, last reported, entered }
+        private final Map<String, long[]> overflow = new HashMap<>();
+        private final TimingWheel deadlines = new TimingWheel(WHEEL_TICK_MILLIS, System.currentTimeMillis());
+        // Context of the expire() call in progress
+        private long expireNow;
+        private long expireCutoff;
+        private List<TagEvent> expireExits;
+
+        Segment(int capacity) {
+            allocate(capacity);
+        }
+
+        synchronized TagEvent.Type read(long hi, long lo, long now) {
+            int slot = find(hi, lo);
+            if (keyHi[slot] != 0) {
+                lastSeen[slot] = now;
+                if (reReportMillis > 0 && now - lastReported[slot] >= reReportMillis) {
+                    lastReported[slot] = now;
+                    return TagEvent.Type.REPORT;
+                }
+                return null;
+            }
+            
+            keyHi[slot] = hi;
+            keyLo[slot] = lo;
+            lastSeen[slot] = now;
+            lastReported[slot] = now;
+            enteredAt[slot] = now;
+            deadlines.schedule(hi, lo, now + ttlMillis);
+            if (++size > keyHi.length * 3 / 4) {
+                resize();
+            }
+            return TagEvent.Type.ENTER;
+        }
+
+        synchronized TagEvent.Type readOverflow(String tagId, long now) {
+            long[] times = overflow.get(tagId);
+            if (times == null) {
+                overflow.put(tagId, new long[] { now, now, now });
+                return TagEvent.Type.ENTER;
+            }
+            times[0] = now;
+            if (reReportMillis > 0 && now - times[1] >= reReportMillis) {
+                times[1] = now;
+                return TagEvent.Type.REPORT;
+            }
+            return null;
+        }
+
+        synchronized boolean contains(long hi, long lo) {
+            return keyHi[find(hi, lo)] != 0;
+        }
+
+        synchronized boolean containsOverflow(String tagId) {
+            return overflow.containsKey(tagId);
+        }
+
+        synchronized void expire(long now, long cutoff, List<TagEvent> exits) {
+            expireNow = now;
+            expireCutoff = cutoff;
+            expireExits = exits;
+            deadlines.advance(now, this);
+            expireExits = null;
+            
+            Iterator<Map.Entry<String, long[]>> it = overflow.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, long[]> entry = it.next();
+                long[] times = entry.getValue();
+                if (times[0] < cutoff) {
+                    exits.add(new TagEvent(TagEvent.Type.EXIT, entry.getKey(), reader, now, times[0] - times[2]));
+                    it.remove();
+                }
+            }
+        }
+
+        /**
+         * A tag's deadline came up while expiring; called with the segment locked
+         */
+        @Override
+        public void expired(long hi, long lo) {
+            int slot = find(hi, lo);
+            if (keyHi[slot] == 0) {
+                return; // cleared since
+            }
+            if (lastSeen[slot] >= expireCutoff) {
+                deadlines.schedule(hi, lo, lastSeen[slot] + ttlMillis);
+                return;
+            }
+            expireExits.add(new TagEvent(TagEvent.Type.EXIT, EpcCodec.unpack(hi, lo), reader, expireNow,
+                    lastSeen[slot] - enteredAt[slot]));
+            remove(slot);
+        }
+
+        synchronized int size() {
+            return size + overflow.size();
+        }
+
+        synchronized void clear() {
+            allocate(INITIAL_SEGMENT_CAPACITY);
+            size = 0;
+            overflow.clear();
+            deadlines.clear();
+        }
+
+        /**
+         * Slot holding the key, or the empty slot where it would be inserted
+         */
+        private int find(long hi, long lo) {
+            int mask = keyHi.length - 1;
+            int slot = (int) mix(hi, lo) & mask;
+            while (keyHi[slot] != 0 && (keyHi[slot] != hi || keyLo[slot] != lo)) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        /**
+         * Backward-shift deletion keeps probe chains intact without tombstones
+         */
+        private void remove(int slot) {
+            int mask = keyHi.length - 1;
+            int hole = slot;
+            int next = (hole + 1) & mask;
+            while (keyHi[next] != 0) {
+                int home = (int) mix(keyHi[next], keyLo[next]) & mask;
+                // move the entry back if the hole lies between its home slot and its current slot
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    keyHi[hole] = keyHi[next];
+                    keyLo[hole] = keyLo[next];
+                    lastSeen[hole] = lastSeen[next];
+                    lastReported[hole] = lastReported[next];
+                    enteredAt[hole] = enteredAt[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            keyHi[hole] = 0;
+            keyLo[hole] = 0;
+            size--;
+        }
+
+        private void resize() {
+            long[] oldHi = keyHi;
+            long[] oldLo = keyLo;
+            long[] oldSeen = lastSeen;
+            long[] oldReported = lastReported;
+            long[] oldEntered = enteredAt;
+            allocate(oldHi.length * 2);
+            for (int i = 0; i < oldHi.length; i++) {
+                if (oldHi[i] != 0) {
+                    int slot = find(oldHi[i], oldLo[i]);
+                    keyHi[slot] = oldHi[i];
+                    keyLo[slot] = oldLo[i];
+                    lastSeen[slot] = oldSeen[i];
+                    lastReported[slot] = oldReported[i];
+                    enteredAt[slot] = oldEntered[i];
+                }
+            }
+        }
+
+        private void allocate(int capacity) {
+            keyHi = new long[capacity];
+            keyLo = new long[capacity];
+            lastSeen = new long[capacity];
+            lastReported = new long[capacity];
+            enteredAt = new long[capacity];
+        }
+    }
+}
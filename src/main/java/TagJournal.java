@@ -0,0 +1,392 @@
+package main.java;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only audit journal of tag events and writes, in memory-mapped
+ * segment files of fixed-size binary records.
+ *
+ * Appending is a handful of puts into the mapped segment, with no syscall
+ * and no fsync per record; the segment is forced to disk every
+ * "journal.sync.ms" and when it is full, and a new segment is started.
+ * Each segment starts with a header holding the committed record count and
+ * time range, updated after every record, so a crashed process loses no
+ * record it had finished appending and scans can skip whole segments.
+ *
+ * Record layout (64 bytes): timestamp (8), sequence (8), kind (1),
+ * result (1), reader length (1), tag length (1), reader (12), tag (32).
+ * Longer reader names and tag IDs are truncated.
+ */
+public class TagJournal {
+
+    public enum Kind {
+        ENTER,
+        REPORT,
+        EXIT,
+        WRITE
+    }
+
+    public enum Result {
+        NONE,
+        OK,
+        FAILED
+    }
+
+    static final int RECORD_SIZE = 64;
+    static final int HEADER_SIZE = 64;
+    private static final int MAGIC = 0x52464A31; // "RFJ1"
+    private static final int READER_LENGTH = 12;
+    private static final int TAG_LENGTH = 32;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    // Header fields
+    private static final int COUNT_OFFSET = 8;
+    private static final int MIN_TIME_OFFSET = 16;
+    private static final int MAX_TIME_OFFSET = 24;
+
+    private final File directory;
+    private final int recordsPerSegment;
+    private final long syncMillis;
+    private ScheduledExecutorService syncer;
+
+    // Active segment, guarded by this
+    private RandomAccessFile segmentFile;
+    private MappedByteBuffer segment;
+    private long count;
+    private long minTime;
+    private long maxTime;
+    private long nextSequence;
+    private boolean dirty;
+
+    public TagJournal(File directory, long segmentBytes, long syncMillis) {
+        this.directory = directory;
+        this.syncMillis = syncMillis;
+        this.recordsPerSegment = (int) Math.min(Integer.MAX_VALUE / RECORD_SIZE,
+                Math.max(1, (segmentBytes - HEADER_SIZE) / RECORD_SIZE));
+    }
+
+    /**
+     * Journal configured from the journal.* properties, or null if it is disabled
+     */
+    public static TagJournal fromProperties() {
+        if (!Boolean.parseBoolean(AppConfig.properties.getProperty("journal.enabled", "true"))) {
+            return null;
+        }
+        return new TagJournal(new File(AppConfig.properties.getProperty("journal.dir", "journal")),
+                Long.parseLong(AppConfig.properties.getProperty("journal.segment.mb", "64")) * 1024 * 1024,
+                Long.parseLong(AppConfig.properties.getProperty("journal.sync.ms", "1000")));
+    }
+
+    /**
+     * Continue the newest segment (or start the first) and begin periodic syncing
+     */
+    public synchronized void open() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create journal directory: " + directory.getAbsolutePath());
+        }
+
+        File[] segments = listSegments(directory);
+        if (segments.length > 0) {
+            File last = segments[segments.length - 1];
+            mapSegment(last);
+            count = segment.getLong(COUNT_OFFSET);
+            minTime = segment.getLong(MIN_TIME_OFFSET);
+            maxTime = segment.getLong(MAX_TIME_OFFSET);
+            nextSequence = count > 0
+                    ? segment.getLong(HEADER_SIZE + (int) (count - 1) * RECORD_SIZE + 8) + 1
+                    : firstSequenceOf(last);
+            if (count >= recordsPerSegment) {
+                roll();
+            }
+        } else {
+            startSegment(0);
+        }
+
+        if (syncMillis > 0) {
+            syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "rfid-journal-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncer.scheduleWithFixedDelay(this::sync, syncMillis, syncMillis, TimeUnit.MILLISECONDS);
+        }
+        System.out.println("Tag journal open at " + directory.getAbsolutePath() + " (next record " + nextSequence + ")");
+    }
+
+    public void onTagEvent(TagEvent event) {
+        Kind kind = event.getType() == TagEvent.Type.ENTER ? Kind.ENTER
+                : event.getType() == TagEvent.Type.EXIT ? Kind.EXIT : Kind.REPORT;
+        append(event.getTimestamp(), kind, Result.NONE, event.getReader(), event.getTagId());
+    }
+
+    public void onWrite(String reader, String tagId, boolean verified) {
+        append(System.currentTimeMillis(), Kind.WRITE, verified ? Result.OK : Result.FAILED, reader, tagId);
+    }
+
+    /**
+     * Append one record; safe to call from any thread
+     */
+    public synchronized void append(long timestamp, Kind kind, Result result, String reader, String tagId) {
+        if (segment == null) {
+            return; // closed
+        }
+        if (count >= recordsPerSegment) {
+            try {
+                roll();
+            } catch (IOException e) {
+                System.err.println("Tag journal cannot start a new segment: " + e.getMessage());
+                return;
+            }
+        }
+
+        int position = HEADER_SIZE + (int) count * RECORD_SIZE;
+        segment.putLong(position, timestamp);
+        segment.putLong(position + 8, nextSequence++);
+        segment.put(position + 16, (byte) kind.ordinal());
+        segment.put(position + 17, (byte) result.ordinal());
+        segment.put(position + 18, (byte) putAscii(position + 20, reader, READER_LENGTH));
+        segment.put(position + 19, (byte) putAscii(position + 32, tagId, TAG_LENGTH));
+
+        // Commit: the record only counts once the header says so
+        if (count == 0 || timestamp < minTime) {
+            minTime = timestamp;
+            segment.putLong(MIN_TIME_OFFSET, minTime);
+        }
+        if (count == 0 || timestamp > maxTime) {
+            maxTime = timestamp;
+            segment.putLong(MAX_TIME_OFFSET, maxTime);
+        }
+        segment.putLong(COUNT_OFFSET, ++count);
+        dirty = true;
+    }
+
+    private int putAscii(int position, String value, int maxLength) {
+        int length = Math.min(value.length(), maxLength);
+        for (int i = 0; i < length; i++) {
+            segment.put(position + i, (byte) value.charAt(i));
+        }
+        return length;
+    }
+
+    /**
+     * Force appended records to disk
+     */
+    public void sync() {
+        MappedByteBuffer written;
+        synchronized (this) {
+            if (segment == null || !dirty) {
+                return;
+            }
+            written = segment;
+            dirty = false;
+        }
+        // Outside the lock, so appends carry on while the pages are flushed
+        written.force();
+    }
+
+    public synchronized void close() {
+        if (syncer != null) {
+            syncer.shutdownNow();
+        }
+        if (segment == null) {
+            return;
+        }
+        sync();
+        segment = null;
+        try {
+            segmentFile.close();
+        } catch (IOException e) {
+            System.err.println("Error closing tag journal: " + e.getMessage());
+        }
+    }
+
+    private void roll() throws IOException {
+        sync();
+        segmentFile.close();
+        startSegment(nextSequence);
+    }
+
+    private void startSegment(long firstSequence) throws IOException {
+        File file = new File(directory, String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+        mapSegment(file);
+        segment.putInt(0, MAGIC);
+        segment.putInt(4, RECORD_SIZE);
+        segment.putLong(COUNT_OFFSET, 0);
+        count = 0;
+        nextSequence = firstSequence;
+    }
+
+    private void mapSegment(File file) throws IOException {
+        segmentFile = new RandomAccessFile(file, "rw");
+        FileChannel channel = segmentFile.getChannel();
+        long size = HEADER_SIZE + (long) recordsPerSegment * RECORD_SIZE;
+        // Never map less than is there, so a segment written with a larger setting can be continued
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, channel.size()));
+        if (segment.getInt(0) != 0 && segment.getInt(0) != MAGIC) {
+            segmentFile.close();
+            segment = null;
+            throw new IOException("Not a tag journal segment: " + file);
+        }
+    }
+
+    private static File[] listSegments(File directory) {
+        File[] segments = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX)
+                && name.endsWith(SEGMENT_SUFFIX));
+        if (segments == null) {
+            return new File[0];
+        }
+        // Zero-padded sequence numbers sort by name
+        Arrays.sort(segments);
+        return segments;
+    }
+
+    private static long firstSequenceOf(File segment) {
+        String name = segment.getName();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Receives records during a scan. The record is a view that is reused
+     * for the next one, so copy out anything that must be kept.
+     */
+    public interface RecordVisitor {
+        void visit(Record record) throws IOException;
+    }
+
+    /**
+     * Flyweight view of one record in a mapped segment
+     */
+    public static final class Record {
+        private ByteBuffer buffer;
+        private int position;
+        private final char[] chars = new char[TAG_LENGTH];
+
+        public long getTimestamp() {
+            return buffer.getLong(position);
+        }
+
+        public long getSequence() {
+            return buffer.getLong(position + 8);
+        }
+
+        public Kind getKind() {
+            return Kind.values()[buffer.get(position + 16)];
+        }
+
+        public Result getResult() {
+            return Result.values()[buffer.get(position + 17)];
+        }
+
+        public String getReader() {
+            return ascii(position + 20, buffer.get(position + 18));
+        }
+
+        public String getTagId() {
+            return ascii(position + 32, buffer.get(position + 19));
+        }
+
+        private String ascii(int offset, int length) {
+            for (int i = 0; i < length; i++) {
+                chars[i] = (char) (buffer.get(offset + i) & 0xFF);
+            }
+            return new String(chars, 0, length);
+        }
+    }
+
+    /**
+     * Visit every record with fromMillis <= timestamp < toMillis, segment by
+     * segment in append order. Works while the journal is being appended to.
+     * @return the number of records visited
+     */
+    public static long scan(File directory, long fromMillis, long toMillis, RecordVisitor visitor) throws IOException {
+        Record record = new Record();
+        long visited = 0;
+        for (File file : listSegments(directory)) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                if (channel.size() < HEADER_SIZE) {
+                    continue;
+                }
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                long count = Math.min(segment.getLong(COUNT_OFFSET), (channel.size() - HEADER_SIZE) / RECORD_SIZE);
+                if (segment.getInt(0) != MAGIC || count == 0
+                        || segment.getLong(MAX_TIME_OFFSET) < fromMillis || segment.getLong(MIN_TIME_OFFSET) >= toMillis) {
+                    continue;
+                }
+
+                record.buffer = segment;
+                for (int i = 0; i < count; i++) {
+                    record.position = HEADER_SIZE + i * RECORD_SIZE;
+                    long timestamp = segment.getLong(record.position);
+                    if (timestamp >= fromMillis && timestamp < toMillis) {
+                        visitor.visit(record);
+                        visited++;
+                    }
+                }
+            }
+        }
+        return visited;
+    }
+
+    public static long replay(File directory, RecordVisitor visitor) throws IOException {
+        return scan(directory, Long.MIN_VALUE, Long.MAX_VALUE, visitor);
+    }
+
+    /**
+     * Write the records in the time range as CSV
+     * @return the number of records exported
+     */
+    public static long exportCsv(File directory, long fromMillis, long toMillis, File csv) throws IOException {
+        try (Writer out = new BufferedWriter(new FileWriter(csv))) {
+            out.write("sequence,time,reader,tag,event,result\n");
+            StringBuilder line = new StringBuilder(128);
+            return scan(directory, fromMillis, toMillis, record -> {
+                line.setLength(0);
+                line.append(record.getSequence()).append(',')
+                        .append(Instant.ofEpochMilli(record.getTimestamp())).append(',')
+                        .append(record.getReader()).append(',')
+                        .append(record.getTagId()).append(',')
+                        .append(record.getKind()).append(',')
+                        .append(record.getResult()).append('\n');
+                out.write(line.toString());
+            });
+        }
+    }
+
+    /**
+     * Usage: TagJournal export &lt;dir&gt; &lt;out.csv&gt; [fromMillis] [toMillis]
+     *        TagJournal count &lt;dir&gt; [fromMillis] [toMillis]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || !(args[0].equals("export") || args[0].equals("count"))) {
+            System.err.println("Usage: TagJournal export <dir> <out.csv> [fromMillis] [toMillis]");
+            System.err.println("       TagJournal count <dir> [fromMillis] [toMillis]");
+            System.exit(2);
+        }
+        File directory = new File(args[1]);
+        int rangeArg = args[0].equals("export") ? 3 : 2;
+        long from = args.length > rangeArg ? Long.parseLong(args[rangeArg]) : Long.MIN_VALUE;
+        long to = args.length > rangeArg + 1 ? Long.parseLong(args[rangeArg + 1]) : Long.MAX_VALUE;
+
+        long started = System.nanoTime();
+        long records = args[0].equals("export")
+                ? exportCsv(directory, from, to, new File(args[2]))
+                : scan(directory, from, to, record -> { });
+        double seconds = (System.nanoTime() - started) / 1e9;
+        System.out.printf("%d records in %.3f s (%.0f records/s)%n", records, seconds, records / seconds);
+    }
+}
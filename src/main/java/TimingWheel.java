@@ -0,0 +1,143 @@
+package main.java;
+
+/**
+ * Hierarchical timing wheel of (hi, lo) keys, e.g. packed tag IDs.
+ *
+ * Four levels of 64 slots: level 0 holds the deadlines of the next 64
+ * ticks, level 1 those of the next 64 * 64 ticks, and so on. Scheduling is
+ * O(1). Advancing fires the one level-0 slot per tick; each time a level
+ * wraps, the next slot of the level above is cascaded down. Every entry
+ * is touched a few times at most on its way to expiry, however many other
+ * entries are pending, so nothing scans the whole population per tick.
+ * Deadlines beyond the top level are parked there and cascaded until due.
+ *
+ * Not thread-safe; the owner locks around it. Entries never fire early
+ * but may fire up to one tick late.
+ */
+public class TimingWheel {
+    private static final int LEVELS = 4;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final long MAX_DELTA = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    /**
+     * Told about each key whose deadline has passed; may schedule again
+     */
+    public interface Expiry {
+        void expired(long hi, long lo);
+    }
+
+    private final long tickMillis;
+    private final Bucket[][] levels = new Bucket[LEVELS][SLOTS];
+    // The next tick to process
+    private long currentTick;
+    private int size;
+
+    public TimingWheel(long tickMillis, long startMillis) {
+        this.tickMillis = Math.max(1, tickMillis);
+        this.currentTick = startMillis / this.tickMillis;
+    }
+
+    public void schedule(long hi, long lo, long deadlineMillis) {
+        // Round up, so an entry never fires before its deadline
+        long tick = (deadlineMillis + tickMillis - 1) / tickMillis;
+        add(hi, lo, Math.max(tick, currentTick));
+        size++;
+    }
+
+    /**
+     * Fire every entry due at or before now, in tick order
+     */
+    public void advance(long nowMillis, Expiry handler) {
+        long nowTick = nowMillis / tickMillis;
+        if (size == 0) {
+            currentTick = Math.max(currentTick, nowTick + 1);
+            return;
+        }
+        while (currentTick <= nowTick) {
+            long tick = currentTick;
+            // Higher levels first, so their entries can land in the slot fired below
+            for (int level = LEVELS - 1; level >= 1; level--) {
+                if ((tick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    cascade(level, (int) (tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+                }
+            }
+            Bucket due = levels[0][(int) tick & SLOT_MASK];
+            levels[0][(int) tick & SLOT_MASK] = null;
+            // Entries scheduled again from the handler go to later ticks
+            currentTick = tick + 1;
+            if (due != null) {
+                size -= due.size;
+                for (int i = 0; i < due.size; i++) {
+                    handler.expired(due.data[3 * i], due.data[3 * i + 1]);
+                }
+            }
+            if (size == 0) {
+                currentTick = Math.max(currentTick, nowTick + 1);
+                return;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        for (Bucket[] level : levels) {
+            for (int i = 0; i < SLOTS; i++) {
+                level[i] = null;
+            }
+        }
+        size = 0;
+    }
+
+    private void cascade(int level, int slot) {
+        Bucket bucket = levels[level][slot];
+        if (bucket == null) {
+            return;
+        }
+        levels[level][slot] = null;
+        for (int i = 0; i < bucket.size; i++) {
+            add(bucket.data[3 * i], bucket.data[3 * i + 1], bucket.data[3 * i + 2]);
+        }
+    }
+
+    private void add(long hi, long lo, long tick) {
+        long delta = tick - currentTick;
+        // Parked at the far end of the top level, and placed again when that slot cascades
+        long placed = delta > MAX_DELTA ? currentTick + MAX_DELTA : tick;
+        int level = 0;
+        while (level < LEVELS - 1 && (placed - currentTick) >= (1L << (SLOT_BITS * (level + 1)))) {
+            level++;
+        }
+        int slot = (int) (placed >>> (SLOT_BITS * level)) & SLOT_MASK;
+        Bucket bucket = levels[level][slot];
+        if (bucket == null) {
+            bucket = new Bucket();
+            levels[level][slot] = bucket;
+        }
+        bucket.add(hi, lo, tick);
+    }
+
+    /**
+     * Flat (hi, lo, tick) triples
+     */
+    private static final class Bucket {
+        long[] data = new long[3 * 4];
+        int size;
+
+        void add(long hi, long lo, long tick) {
+            if (3 * size == data.length) {
+                long[] grown = new long[data.length * 2];
+                System.arraycopy(data, 0, grown, 0, data.length);
+                data = grown;
+            }
+            data[3 * size] = hi;
+            data[3 * size + 1] = lo;
+            data[3 * size + 2] = tick;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package main.java;
+
+/**
+ * Byte link between SerialService and a reader: a real serial port or an
+ * in-process emulation. Reads never block; the transport signals arriving
+ * data through the listener instead.
+ */
+public interface Transport {
+
+    /**
+     * Port name used in logs and to tag detections, e.g. COM3
+     */
+    String getName();
+
+    boolean open();
+
+    boolean isOpen();
+
+    void close();
+
+    int bytesAvailable();
+
+    /**
+     * Copy up to length already-received bytes into buffer
+     * @return bytes copied, 0 if none are waiting, -1 on error
+     */
+    int read(byte[] buffer, int offset, int length);
+
+    /**
+     * @return bytes written, -1 on error
+     */
+    int write(byte[] data, int length);
+
+    /**
+     * Called from the transport's own thread whenever bytes arrive; null removes it
+     * @return false if the listener could not be installed
+     */
+    boolean setDataListener(Runnable onDataAvailable);
+
+    /**
+     * Called from the transport's own thread when the device goes away
+     * (e.g. the USB adapter is unplugged); null removes it
+     * @return false if the transport cannot report disconnects
+     */
+    default boolean setDisconnectListener(Runnable onDisconnect) {
+        return false;
+    }
+
+    /**
+     * Current line speed, or 0 for transports without one
+     */
+    default int getBaudRate() {
+        return 0;
+    }
+
+    /**
+     * Change the line speed, also while the port is open
+     * @return false if the transport has no line speed or refused the rate
+     */
+    default boolean setBaudRate(int baudRate) {
+        return false;
+    }
+
+    /**
+     * Transport for the port, chosen by the "rfid.transport" property
+     * ("serial", the default, "virtual" or "replay"), and captured to a
+     * file when "rfid.capture.dir" is set
+     */
+    static Transport create(String portName) {
+        String type = AppConfig.properties.getProperty("rfid.transport", "serial").trim();
+        Transport transport;
+        if ("virtual".equalsIgnoreCase(type)) {
+            transport = VirtualReaderTransport.fromProperties(portName);
+        } else if ("replay".equalsIgnoreCase(type)) {
+            transport = ReplayTransport.fromProperties(portName);
+        } else {
+            transport = new SerialTransport(portName);
+        }
+        return CaptureTransport.wrapIfEnabled(transport);
+    }
+}
@@ -0,0 +1,560 @@
+package main.java;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process emulation of a DB02UHF reader, for running and load-testing
+ * the pipeline without hardware.
+ *
+ * Understands STATUS, SET_POWER, SET_REGION, SET_MODE, SET_BAUD and
+ * WRITE:&lt;id&gt; (replies OK, or ERR for anything else). While in CONTINUOUS mode it reports
+ * tags drawn at random from a fixed population at a configurable rate. It
+ * speaks either the ASCII protocol or the {@link BinaryCodec} one; in binary
+ * mode a backlog of tags goes out as multi-tag inventory reports. All
+ * output is paced to the configured baud rate (10 bits per byte, 0 means
+ * unpaced), optionally with per-fragment jitter, and frames can be split
+ * into random fragments to exercise frame reassembly.
+ *
+ * SET_BAUD switches the emulated line after its reply has gone out. While
+ * the host's rate differs from the reader's, both directions arrive as
+ * garbage, and from a configurable rate upwards the line corrupts the odd
+ * byte, so rate negotiation and its fallback can be exercised.
+ *
+ * unplug() and plug() emulate pulling the USB adapter: the port reports a
+ * disconnect and fails reads and writes, and a replugged reader comes back
+ * with its power-on state (initial rate, inventory stopped).
+ */
+public class VirtualReaderTransport implements Transport {
+    private static final int RX_CAPACITY = 1 << 16;
+    // Tag reports a saturated reader holds back before it starts skipping
+    private static final int MAX_BACKLOG = 256;
+    private static final long IDLE_PARK_NANOS = 100000L;
+    // Most tags one binary inventory report carries
+    private static final int TAGS_PER_REPORT = 16;
+    private static final int RSSI = 0xC8;
+    // Share of bytes corrupted on a noisy line
+    private static final double NOISE_RATE = 0.002;
+    // Queued after a SET_BAUD reply: the line switches once the reply is out
+    private static final byte[] BAUD_SWITCH = new byte[0];
+
+    private final String name;
+    private final double tagsPerSecond;
+    private final String[] population;
+    private final byte[][] populationEpc;
+    private final boolean binary;
+    private final long jitterNanos;
+    private final int maxFragment;
+    private final Random random;
+
+    // Bytes "on the wire" waiting to be read by the host
+    private final byte[] rx = new byte[RX_CAPACITY];
+    private int rxHead;
+    private int rxCount;
+    private long rxOverruns;
+
+    private final ConcurrentLinkedQueue<byte[]> replies = new ConcurrentLinkedQueue<>();
+    private final StringBuilder commandLine = new StringBuilder();
+    private final byte[] commandFrame = new byte[1024];
+    private int commandFrameLength;
+    private final byte[] report = new byte[BinaryCodec.OVERHEAD + 1 + TAGS_PER_REPORT * 64];
+    private volatile Runnable dataListener;
+    private volatile Runnable disconnectListener;
+    private volatile boolean pluggedIn = true;
+    private final int initialBaudRate;
+    private volatile boolean continuous = true;
+    private volatile int lastReported = -1;
+    private volatile boolean open;
+    // Line speed of the emulated reader, and of the host side of the port
+    private volatile int readerBaudRate;
+    private volatile int hostBaudRate;
+    private volatile int pendingBaudRate;
+    private volatile int maxBaudRate = 921600;
+    private volatile int noisyBaudRate;
+    private Thread lineThread;
+    private long framesSent;
+
+    public VirtualReaderTransport(String name, double tagsPerSecond, int populationSize, int baudRate,
+                                  long jitterMicros, int maxFragment, long seed) {
+        this(name, tagsPerSecond, populationSize, baudRate, jitterMicros, maxFragment, seed, false);
+    }
+
+    /**
+     * @param binary speak the binary protocol instead of ASCII lines
+     */
+    public VirtualReaderTransport(String name, double tagsPerSecond, int populationSize, int baudRate,
+                                  long jitterMicros, int maxFragment, long seed, boolean binary) {
+        this.name = name;
+        this.binary = binary;
+        this.tagsPerSecond = tagsPerSecond;
+        this.initialBaudRate = baudRate;
+        this.readerBaudRate = baudRate;
+        this.hostBaudRate = baudRate;
+        this.jitterNanos = jitterMicros * 1000L;
+        this.maxFragment = maxFragment;
+        this.random = new Random(seed);
+
+        this.population = new String[Math.max(1, populationSize)];
+        this.populationEpc = new byte[population.length][];
+        for (int i = 0; i < population.length; i++) {
+            population[i] = String.format("E200%08X%012X", seed & 0xFFFFFFFFL, (long) i);
+            populationEpc[i] = toBytes(population[i]);
+        }
+    }
+
+    /**
+     * Virtual reader configured from the virtual.* properties
+     */
+    public static VirtualReaderTransport fromProperties(String name) {
+        VirtualReaderTransport transport = new VirtualReaderTransport(name,
+                Double.parseDouble(AppConfig.properties.getProperty("virtual.tag.rate", "50")),
+                Integer.parseInt(AppConfig.properties.getProperty("virtual.tag.population", "20")),
+                Integer.parseInt(AppConfig.properties.getProperty("virtual.baudrate",
+                        AppConfig.properties.getProperty("serial.baudrate", "9600"))),
+                Long.parseLong(AppConfig.properties.getProperty("virtual.jitter.us", "0")),
+                Integer.parseInt(AppConfig.properties.getProperty("virtual.fragment.max", "0")),
+                Long.parseLong(AppConfig.properties.getProperty("virtual.seed", String.valueOf(name.hashCode()))),
+                "binary".equalsIgnoreCase(AppConfig.properties.getProperty("rfid.protocol", "ascii").trim()));
+        transport.setLineQuality(
+                Integer.parseInt(AppConfig.properties.getProperty("virtual.baudrate.max", "921600")),
+                Integer.parseInt(AppConfig.properties.getProperty("virtual.noise.baudrate", "0")));
+        return transport;
+    }
+
+    /**
+     * @param maxBaudRate fastest rate SET_BAUD accepts
+     * @param noisyBaudRate rate from which the line corrupts bytes, 0 for never
+     */
+    public void setLineQuality(int maxBaudRate, int noisyBaudRate) {
+        this.maxBaudRate = maxBaudRate;
+        this.noisyBaudRate = noisyBaudRate;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public synchronized boolean open() {
+        if (!pluggedIn) {
+            return false;
+        }
+        if (open) {
+            return true;
+        }
+        open = true;
+        lineThread = new Thread(this::runLine, "virtual-reader-" + name);
+        lineThread.setDaemon(true);
+        lineThread.start();
+        System.out.println("Virtual reader started on " + name + " (" + tagsPerSecond + " tags/s, "
+                + population.length + " tags, " + (readerBaudRate > 0 ? readerBaudRate + " baud" : "unpaced")
+                + (binary ? ", binary" : "") + ")");
+        return true;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public synchronized void close() {
+        open = false;
+        if (lineThread != null) {
+            lineThread.interrupt();
+            lineThread = null;
+        }
+    }
+
+    @Override
+    public synchronized int bytesAvailable() {
+        return pluggedIn ? rxCount : -1;
+    }
+
+    @Override
+    public synchronized int read(byte[] buffer, int offset, int length) {
+        if (!pluggedIn) {
+            return -1;
+        }
+        int n = Math.min(length, rxCount);
+        for (int i = 0; i < n; i++) {
+            buffer[offset + i] = rx[(rxHead + i) & (RX_CAPACITY - 1)];
+        }
+        rxHead = (rxHead + n) & (RX_CAPACITY - 1);
+        rxCount -= n;
+        return n;
+    }
+
+    @Override
+    public int write(byte[] data, int length) {
+        if (!open || !pluggedIn) {
+            return -1;
+        }
+        if (hostBaudRate != readerBaudRate) {
+            return length; // garbage to the reader at the wrong rate
+        }
+        // Commands are parsed as they are written; replies go out on the line thread
+        if (binary) {
+            receiveBinary(data, length);
+            return length;
+        }
+        synchronized (commandLine) {
+            for (int i = 0; i < length; i++) {
+                char c = (char) (data[i] & 0xFF);
+                if (c == '\r' || c == '\n') {
+                    if (commandLine.length() > 0) {
+                        execute(commandLine.toString().trim());
+                        commandLine.setLength(0);
+                    }
+                } else {
+                    commandLine.append(c);
+                }
+            }
+        }
+        return length;
+    }
+
+    @Override
+    public boolean setDisconnectListener(Runnable onDisconnect) {
+        this.disconnectListener = onDisconnect;
+        return true;
+    }
+
+    /**
+     * Pull the adapter: received bytes are lost and the disconnect listener is told
+     */
+    public void unplug() {
+        synchronized (this) {
+            pluggedIn = false;
+            rxCount = 0;
+        }
+        Runnable listener = disconnectListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Plug the adapter back in; the reader has lost its settings
+     */
+    public void plug() {
+        replies.clear();
+        readerBaudRate = initialBaudRate;
+        continuous = false;
+        synchronized (this) {
+            pluggedIn = true;
+        }
+    }
+
+    @Override
+    public int getBaudRate() {
+        return hostBaudRate;
+    }
+
+    @Override
+    public boolean setBaudRate(int baudRate) {
+        hostBaudRate = baudRate;
+        return true;
+    }
+
+    @Override
+    public boolean setDataListener(Runnable onDataAvailable) {
+        this.dataListener = onDataAvailable;
+        return true;
+    }
+
+    /**
+     * Bytes lost because the host did not read them in time
+     */
+    public synchronized long getRxOverruns() {
+        return rxOverruns;
+    }
+
+    public synchronized long getFramesSent() {
+        return framesSent;
+    }
+
+    /**
+     * Collect binary command frames; frames with a bad CRC are skipped like a real reader would
+     */
+    private void receiveBinary(byte[] data, int length) {
+        synchronized (commandFrame) {
+            for (int i = 0; i < length; i++) {
+                if (commandFrameLength == 0 && (data[i] & 0xFF) != BinaryCodec.SOF) {
+                    continue;
+                }
+                if (commandFrameLength == commandFrame.length) {
+                    commandFrameLength = 0;
+                    continue;
+                }
+                commandFrame[commandFrameLength++] = data[i];
+                if (commandFrameLength < 3) {
+                    continue;
+                }
+                int payload = (commandFrame[1] & 0xFF) << 8 | (commandFrame[2] & 0xFF);
+                if (commandFrameLength < payload + BinaryCodec.OVERHEAD - 1) {
+                    continue;
+                }
+                int crc = (commandFrame[payload + 3] & 0xFF) << 8 | (commandFrame[payload + 4] & 0xFF);
+                if (payload > 0 && Crc16.update(Crc16.INITIAL, commandFrame, 1, payload + 2) == crc) {
+                    executeBinary(commandFrame[3] & 0xFF, commandFrame, 4, payload - 1);
+                }
+                commandFrameLength = 0;
+            }
+        }
+    }
+
+    private void executeBinary(int code, byte[] data, int offset, int length) {
+        String keyword = BinaryCodec.commandName(code);
+        if (keyword == null) {
+            replies.add(BinaryCodec.frame(code | BinaryCodec.REPLY,
+                    new byte[] {(byte) BinaryCodec.STATUS_UNKNOWN_COMMAND}, 0, 1));
+            return;
+        }
+        String argument;
+        switch (code) {
+            case BinaryCodec.CMD_SET_POWER:
+                argument = length > 0 ? String.valueOf(data[offset] & 0xFF) : "";
+                break;
+            case BinaryCodec.CMD_SET_MODE:
+                argument = length > 0 && data[offset] == 1 ? "CONTINUOUS" : "IDLE";
+                break;
+            case BinaryCodec.CMD_WRITE:
+                argument = toHex(data, offset, length);
+                break;
+            case BinaryCodec.CMD_SET_BAUD:
+                argument = length == 4 ? String.valueOf(
+                        ByteBuffer.wrap(data, offset, length).getInt()) : "";
+                break;
+            default:
+                argument = new String(data, offset, length, StandardCharsets.US_ASCII);
+        }
+        execute(keyword, argument);
+    }
+
+    private void execute(String command) {
+        int colon = command.indexOf(':');
+        execute(colon >= 0 ? command.substring(0, colon) : command,
+                colon >= 0 ? command.substring(colon + 1) : "");
+    }
+
+    private void execute(String keyword, String argument) {
+        switch (keyword) {
+            case "STATUS":
+                replyOk(keyword, "DB02UHF-VIRTUAL " + (continuous ? "CONTINUOUS" : "IDLE"));
+                break;
+            case "SET_POWER":
+            case "SET_REGION":
+                replyOk(keyword, null);
+                break;
+            case "SET_MODE":
+                continuous = "CONTINUOUS".equalsIgnoreCase(argument);
+                replyOk(keyword, null);
+                break;
+            case "SET_BAUD":
+                int rate;
+                try {
+                    rate = Integer.parseInt(argument.trim());
+                } catch (NumberFormatException e) {
+                    rate = 0;
+                }
+                if (rate <= 0 || rate > maxBaudRate) {
+                    replyError(keyword, BinaryCodec.STATUS_BAD_ARGUMENT, "BAD_BAUDRATE");
+                    break;
+                }
+                pendingBaudRate = rate;
+                replyOk(keyword, null);
+                replies.add(BAUD_SWITCH);
+                break;
+            case "WRITE":
+                if (argument.isEmpty()) {
+                    replyError(keyword, BinaryCodec.STATUS_BAD_ARGUMENT, "EMPTY_ID");
+                    break;
+                }
+                int index = Math.max(lastReported, 0);
+                synchronized (population) {
+                    population[index] = argument;
+                    populationEpc[index] = toBytes(argument);
+                }
+                replyOk(keyword, null);
+                // The rewritten tag answers with its new ID straight away
+                replies.add(tagReport(new int[] {index}, 1));
+                break;
+            default:
+                replyError(keyword, BinaryCodec.STATUS_UNKNOWN_COMMAND, "UNKNOWN_COMMAND");
+        }
+    }
+
+    /**
+     * ASCII replies are "OK" ("STATUS:OK detail" for STATUS); binary ones carry the detail after the status byte
+     */
+    private void replyOk(String keyword, String detail) {
+        if (!binary) {
+            String reply = detail == null ? "OK" : keyword + ":OK " + detail;
+            replies.add((reply + "\r\n").getBytes());
+            return;
+        }
+        byte[] text = detail == null ? new byte[0] : detail.getBytes(StandardCharsets.US_ASCII);
+        byte[] data = new byte[1 + text.length];
+        data[0] = (byte) BinaryCodec.STATUS_OK;
+        System.arraycopy(text, 0, data, 1, text.length);
+        replies.add(BinaryCodec.frame(BinaryCodec.commandCode(keyword) | BinaryCodec.REPLY, data, 0, data.length));
+    }
+
+    private void replyError(String keyword, int status, String name) {
+        if (!binary) {
+            replies.add(("ERR:" + name + "\r\n").getBytes());
+            return;
+        }
+        int code = BinaryCodec.commandCode(keyword);
+        replies.add(BinaryCodec.frame((code < 0 ? 0 : code) | BinaryCodec.REPLY, new byte[] {(byte) status}, 0, 1));
+    }
+
+    /**
+     * One report of the given population members: an ASCII line for the first,
+     * or one binary inventory frame for all of them
+     */
+    private byte[] tagReport(int[] indexes, int count) {
+        synchronized (population) {
+            if (!binary) {
+                return (population[indexes[0]] + "\r\n").getBytes();
+            }
+            int p = 0;
+            report[p++] = (byte) count;
+            for (int i = 0; i < count; i++) {
+                byte[] epc = populationEpc[indexes[i]];
+                report[p++] = (byte) RSSI;
+                report[p++] = (byte) epc.length;
+                System.arraycopy(epc, 0, report, p, epc.length);
+                p += epc.length;
+            }
+            return BinaryCodec.frame(BinaryCodec.CMD_INVENTORY, report, 0, p);
+        }
+    }
+
+    /**
+     * EPC bytes of a hex tag ID; IDs that aren't hex are sent as their characters
+     */
+    private static byte[] toBytes(String id) {
+        if (id.length() % 2 == 0 && id.length() <= 64 && id.matches("[0-9A-Fa-f]*")) {
+            byte[] epc = new byte[id.length() / 2];
+            for (int i = 0; i < epc.length; i++) {
+                epc[i] = (byte) Integer.parseInt(id.substring(2 * i, 2 * i + 2), 16);
+            }
+            return epc;
+        }
+        byte[] chars = id.getBytes(StandardCharsets.US_ASCII);
+        return chars.length > 32 ? Arrays.copyOf(chars, 32) : chars;
+    }
+
+    private static String toHex(byte[] data, int offset, int length) {
+        StringBuilder hex = new StringBuilder(2 * length);
+        for (int i = offset; i < offset + length; i++) {
+            hex.append(String.format("%02X", data[i] & 0xFF));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Line thread: emits replies and tag reports, paced to the baud rate
+     */
+    private void runLine() {
+        long start = System.nanoTime();
+        long reported = 0;
+        long lineFreeAt = start;
+
+        int[] batch = new int[TAGS_PER_REPORT];
+
+        while (open && !Thread.currentThread().isInterrupted()) {
+            // Command replies go out ahead of pending tag reports
+            if (!pluggedIn) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            byte[] bytes = replies.poll();
+            if (bytes == BAUD_SWITCH) {
+                readerBaudRate = pendingBaudRate;
+                continue;
+            }
+
+            if (bytes == null && continuous && tagsPerSecond > 0) {
+                long due = (long) ((System.nanoTime() - start) / 1e9 * tagsPerSecond);
+                // A reader that can't keep up with its own inventory skips reports
+                reported = Math.max(reported, due - MAX_BACKLOG);
+                // Binary reports carry whatever has piled up since the last one
+                int count = (int) Math.min(due - reported, binary ? TAGS_PER_REPORT : 1);
+                if (count > 0) {
+                    for (int i = 0; i < count; i++) {
+                        batch[i] = random.nextInt(population.length);
+                    }
+                    lastReported = batch[count - 1];
+                    bytes = tagReport(batch, count);
+                    reported += count;
+                }
+            }
+
+            if (bytes == null) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+
+            int baudRate = readerBaudRate;
+            double nanosPerByte = baudRate > 0 ? 10e9 / baudRate : 0;
+            boolean garbled = baudRate != hostBaudRate;
+            boolean noisy = noisyBaudRate > 0 && baudRate >= noisyBaudRate;
+            if (garbled || noisy) {
+                bytes = bytes.clone(); // replies and reports may be shared
+                for (int i = 0; i < bytes.length; i++) {
+                    if (garbled || random.nextDouble() < NOISE_RATE) {
+                        bytes[i] = (byte) random.nextInt(256);
+                    }
+                }
+            }
+
+            int sent = 0;
+            while (sent < bytes.length) {
+                int fragment = maxFragment > 0 ? 1 + random.nextInt(Math.min(maxFragment, bytes.length - sent))
+                        : bytes.length - sent;
+
+                if (nanosPerByte > 0 || jitterNanos > 0) {
+                    lineFreeAt = Math.max(lineFreeAt, System.nanoTime()) + (long) (fragment * nanosPerByte);
+                    if (jitterNanos > 0) {
+                        lineFreeAt += (long) (random.nextDouble() * jitterNanos);
+                    }
+                    long wait = lineFreeAt - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
+
+                deliver(bytes, sent, fragment);
+                sent += fragment;
+            }
+            synchronized (this) {
+                framesSent++;
+            }
+        }
+    }
+
+    private void deliver(byte[] bytes, int offset, int length) {
+        synchronized (this) {
+            for (int i = 0; i < length; i++) {
+                if (rxCount == RX_CAPACITY) {
+                    rxOverruns++;
+                    continue; // like a UART FIFO overrun, the new byte is lost
+                }
+                rx[(rxHead + rxCount) & (RX_CAPACITY - 1)] = bytes[offset + i];
+                rxCount++;
+            }
+        }
+        Runnable listener = dataListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+}
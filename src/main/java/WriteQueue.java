@@ -0,0 +1,566 @@
+package main.java;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent queue of tag write jobs (target ID, attempts, state), so a
+ * crash or a dropped port never loses track of which IDs were pending,
+ * written or not verified.
+ *
+ * Every change of a job appends the job's full state to an append-only
+ * log; on open the log is replayed (last record per job wins) and a torn
+ * record at the end is cut off. Changes are buffered in memory and one
+ * committer thread writes and fsyncs whatever has accumulated, so many
+ * changes share one fsync (group commit). The futures returned by the
+ * mutators complete once the change is on disk.
+ *
+ * A job is claimed (SCHEDULED) when a write of it is arranged, under the
+ * queue's lock, so two detections can never both schedule the same job.
+ * Each job remembers the tag it is meant for, and a pending job is only
+ * picked up again for that tag (see {@link #claimPending}).
+ *
+ * Verified jobs leave memory at once; when the log has grown to several
+ * times the size of the live jobs it is rewritten with just those and
+ * atomically swapped in.
+ *
+ * Record layout: payload length (4), CRC32 of the payload (4), then job
+ * ID (8), state (1), attempts (4), updated (8), target length (2), the
+ * target ID in UTF-8, source length (2) and the ID of the tag the job is
+ * meant for in UTF-8 (empty if not known).
+ */
+public class WriteQueue {
+
+    public enum State {
+        /** Waiting for a tag to write to */
+        PENDING,
+        /** Write sent; a crash here leaves it unknown whether it reached the tag */
+        WRITING,
+        /** The reader confirmed the write, the read-back is still outstanding */
+        WRITTEN,
+        VERIFIED,
+        /** Out of attempts */
+        FAILED,
+        /** Claimed for a write that is about to start; persisted by ordinal, hence last */
+        SCHEDULED
+    }
+
+    public static final class Job {
+        private final long id;
+        private final String targetId;
+        private volatile String sourceTagId;
+        private volatile State state;
+        private volatile int attempts;
+        private volatile long updated;
+
+        Job(long id, String targetId, String sourceTagId, State state, int attempts, long updated) {
+            this.id = id;
+            this.targetId = targetId;
+            this.sourceTagId = sourceTagId;
+            this.state = state;
+            this.attempts = attempts;
+            this.updated = updated;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getTargetId() {
+            return targetId;
+        }
+
+        /**
+         * The tag the target ID is meant to be written to, or "" if not known
+         */
+        public String getSourceTagId() {
+            return sourceTagId;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+
+        public long getUpdated() {
+            return updated;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + id + " " + targetId + " " + state + " (" + attempts + " attempts)";
+        }
+    }
+
+    private static final String LOG_NAME = "writes.log";
+    private static final int RECORD_HEADER = 8;
+    private static final int FIXED_PAYLOAD = 8 + 1 + 4 + 8 + 2 + 2;
+    private static final int MAX_TARGET_BYTES = 1024;
+
+    private final File directory;
+    private final File logFile;
+    private final int maxAttempts;
+    private final long compactBytes;
+
+    // Guarded by this
+    private final Map<Long, Job> jobs = new LinkedHashMap<>();
+    private final Map<String, Job> unfinishedByTarget = new HashMap<>();
+    private ByteBuffer appended = ByteBuffer.allocate(64 * 1024);
+    private ByteBuffer committing = ByteBuffer.allocate(64 * 1024);
+    private List<CompletableFuture<Void>> waiting = new ArrayList<>();
+    private List<CompletableFuture<Void>> committingWaiters = new ArrayList<>();
+    private long nextId = 1;
+    private boolean running;
+    private Thread committer;
+
+    // Only touched by the committer thread after open
+    private FileChannel channel;
+    private long logBytes;
+
+    public WriteQueue(File directory, int maxAttempts, long compactBytes) {
+        this.directory = directory;
+        this.logFile = new File(directory, LOG_NAME);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.compactBytes = compactBytes;
+    }
+
+    /**
+     * Queue configured from the writequeue.* properties, or null if it is disabled
+     */
+    public static WriteQueue fromProperties() {
+        if (!Boolean.parseBoolean(AppConfig.properties.getProperty("writequeue.enabled", "true"))) {
+            return null;
+        }
+        return new WriteQueue(new File(AppConfig.properties.getProperty("writequeue.dir", "writequeue")),
+                Integer.parseInt(AppConfig.properties.getProperty("rfid.retry.attempts", "3")),
+                Long.parseLong(AppConfig.properties.getProperty("writequeue.compact.kb", "1024")) * 1024);
+    }
+
+    /**
+     * Replay the log and start committing. Jobs that were scheduled or
+     * being written when the process stopped go back to PENDING, keeping
+     * their attempts.
+     */
+    public synchronized void open() throws IOException {
+        if (running) {
+            return;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create write queue directory: " + directory.getAbsolutePath());
+        }
+        channel = FileChannel.open(logFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        logBytes = replay();
+        if (logBytes < channel.size()) {
+            System.err.println("Write queue: dropping " + (channel.size() - logBytes) + " bytes of torn log tail");
+            channel.truncate(logBytes);
+        }
+        channel.position(logBytes);
+
+        long now = System.currentTimeMillis();
+        for (Job job : jobs.values()) {
+            if (job.state == State.WRITING || job.state == State.SCHEDULED) {
+                job.state = State.PENDING;
+                job.updated = now;
+                append(job);
+            }
+        }
+
+        running = true;
+        committer = new Thread(this::commitLoop, "rfid-write-queue");
+        committer.setDaemon(true);
+        committer.start();
+        System.out.println("Write queue open at " + logFile.getAbsolutePath() + ": " + summary());
+    }
+
+    /**
+     * Claim a write of the target ID onto the given tag: the unfinished job
+     * that already has the target if it is PENDING, otherwise a new job.
+     * @param sourceTagId the tag to write to, or "" for a write the operator
+     *        asked for, which may also redo a WRITTEN job whose read-back failed
+     * @return the job, now SCHEDULED, or null if the target's job is already
+     *         scheduled, being written or waiting for its read-back
+     */
+    public synchronized Job claim(String targetId, String sourceTagId) {
+        Job job = unfinishedByTarget.get(targetId);
+        if (job != null && job.state != State.PENDING
+                && !(sourceTagId.isEmpty() && job.state == State.WRITTEN)) {
+            return null;
+        }
+        if (job == null) {
+            job = new Job(nextId++, targetId, sourceTagId, State.SCHEDULED, 0, System.currentTimeMillis());
+            jobs.put(job.id, job);
+            unfinishedByTarget.put(targetId, job);
+        } else {
+            job.sourceTagId = sourceTagId;
+            job.state = State.SCHEDULED;
+            job.updated = System.currentTimeMillis();
+        }
+        append(job);
+        return job;
+    }
+
+    /**
+     * Claim the oldest PENDING job meant for the given tag, e.g. one left
+     * over from a restart or a dropped port, now that the tag is back
+     * @return the job, now SCHEDULED, or null if none is pending for the tag
+     */
+    public synchronized Job claimPending(String sourceTagId) {
+        for (Job job : jobs.values()) {
+            if (job.state == State.PENDING && job.sourceTagId.equals(sourceTagId)) {
+                job.state = State.SCHEDULED;
+                job.updated = System.currentTimeMillis();
+                append(job);
+                return job;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Count an attempt and mark the claimed job WRITING; send the write only once
+     * the returned future completes, so a crash can never leave a written
+     * tag without a record of it
+     */
+    public CompletableFuture<Void> started(Job job) {
+        return update(job, State.WRITING, 1);
+    }
+
+    public CompletableFuture<Void> written(Job job) {
+        return update(job, State.WRITTEN, 0);
+    }
+
+    public CompletableFuture<Void> verified(Job job) {
+        return update(job, State.VERIFIED, 0);
+    }
+
+    /**
+     * The attempt failed: back to PENDING, or FAILED once out of attempts
+     */
+    public CompletableFuture<Void> failed(Job job) {
+        return update(job, null, 0);
+    }
+
+    /**
+     * @param state the new state, or null for PENDING/FAILED depending on the attempts left
+     */
+    private synchronized CompletableFuture<Void> update(Job job, State state, int extraAttempts) {
+        if (jobs.get(job.id) != job) {
+            return CompletableFuture.completedFuture(null); // finished or from a previous run
+        }
+        if (state == null) {
+            state = job.attempts >= maxAttempts ? State.FAILED : State.PENDING;
+        }
+        job.state = state;
+        job.attempts += extraAttempts;
+        job.updated = System.currentTimeMillis();
+        if (state == State.VERIFIED || state == State.FAILED) {
+            unfinishedByTarget.remove(job.targetId);
+        }
+        if (state == State.VERIFIED) {
+            jobs.remove(job.id);
+        }
+        return append(job);
+    }
+
+    /**
+     * Complete once everything changed so far is on disk
+     */
+    public synchronized CompletableFuture<Void> flush() {
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        if (appended.position() > 0) {
+            waiting.add(durable);
+        } else if (!committingWaiters.isEmpty()) {
+            // Only a commit in flight: done when it is
+            committingWaiters.add(durable);
+        } else {
+            durable.complete(null);
+        }
+        return durable;
+    }
+
+    public synchronized List<Job> getJobs() {
+        return new ArrayList<>(jobs.values());
+    }
+
+    public synchronized int count(State state) {
+        int count = 0;
+        for (Job job : jobs.values()) {
+            if (job.state == state) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * One-line summary for the log
+     */
+    public String summary() {
+        return (count(State.PENDING) + count(State.SCHEDULED)) + " pending, " + count(State.WRITTEN) + " written but not verified, "
+                + count(State.FAILED) + " failed";
+    }
+
+    /**
+     * Encode the job's state into the buffer of the next commit; called with the lock held
+     */
+    private CompletableFuture<Void> append(Job job) {
+        appended = encode(appended, job);
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        waiting.add(durable);
+        notifyAll();
+        return durable;
+    }
+
+    private static ByteBuffer encode(ByteBuffer buffer, Job job) {
+        byte[] target = job.targetId.getBytes(StandardCharsets.UTF_8);
+        byte[] source = job.sourceTagId.getBytes(StandardCharsets.UTF_8);
+        int targetLength = Math.min(target.length, MAX_TARGET_BYTES);
+        int sourceLength = Math.min(source.length, MAX_TARGET_BYTES);
+        int length = FIXED_PAYLOAD + targetLength + sourceLength;
+        if (buffer.remaining() < RECORD_HEADER + length) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + RECORD_HEADER + length));
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+        int start = buffer.position();
+        buffer.putInt(length);
+        buffer.putInt(0); // CRC, filled in below
+        buffer.putLong(job.id);
+        buffer.put((byte) job.state.ordinal());
+        buffer.putInt(job.attempts);
+        buffer.putLong(job.updated);
+        buffer.putShort((short) targetLength);
+        buffer.put(target, 0, targetLength);
+        buffer.putShort((short) sourceLength);
+        buffer.put(source, 0, sourceLength);
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), start + RECORD_HEADER, length);
+        buffer.putInt(start + 4, (int) crc.getValue());
+        return buffer;
+    }
+
+    private void commitLoop() {
+        while (true) {
+            synchronized (this) {
+                while (running && appended.position() == 0) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        running = false;
+                    }
+                }
+                if (appended.position() == 0) {
+                    break; // closed and drained
+                }
+                // Everything appended while the previous fsync ran goes out in this one
+                ByteBuffer batch = appended;
+                appended = committing;
+                committing = batch;
+                List<CompletableFuture<Void>> waiters = waiting;
+                waiting = committingWaiters;
+                committingWaiters = waiters;
+            }
+
+            try {
+                committing.flip();
+                while (committing.hasRemaining()) {
+                    logBytes += channel.write(committing);
+                }
+                channel.force(false);
+                complete(committingWaiters, null);
+            } catch (IOException e) {
+                System.err.println("Write queue commit failed: " + e.getMessage());
+                complete(committingWaiters, e);
+            }
+            committing.clear();
+
+            if (compactBytes > 0 && logBytes > compactBytes) {
+                compactIfWorthIt();
+            }
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing write queue: " + e.getMessage());
+        }
+    }
+
+    private void complete(List<CompletableFuture<Void>> waiters, IOException error) {
+        List<CompletableFuture<Void>> done;
+        synchronized (this) {
+            done = new ArrayList<>(waiters);
+            waiters.clear();
+        }
+        for (CompletableFuture<Void> future : done) {
+            if (error == null) {
+                future.complete(null);
+            } else {
+                future.completeExceptionally(error);
+            }
+        }
+    }
+
+    /**
+     * Rewrite the log with only the live jobs once it is mostly history.
+     * Changes buffered meanwhile are appended to the new log afterwards;
+     * the snapshot already holds their outcome, so replaying them again is
+     * harmless.
+     */
+    private void compactIfWorthIt() {
+        ByteBuffer snapshot;
+        synchronized (this) {
+            // Rough size of the live jobs, so the snapshot is only built when it pays off
+            if (logBytes < jobs.size() * (RECORD_HEADER + FIXED_PAYLOAD + 32L) * 4) {
+                return;
+            }
+            snapshot = ByteBuffer.allocate(Math.max(64, jobs.size() * 64));
+            for (Job job : jobs.values()) {
+                snapshot = encode(snapshot, job);
+            }
+        }
+        if (logBytes < snapshot.position() * 4L) {
+            return;
+        }
+
+        File compacted = new File(directory, LOG_NAME + ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(compacted.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                snapshot.flip();
+                while (snapshot.hasRemaining()) {
+                    out.write(snapshot);
+                }
+                out.force(false);
+            }
+            long before = logBytes;
+            channel.close();
+            Files.move(compacted.toPath(), logFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            channel = FileChannel.open(logFile.toPath(), StandardOpenOption.WRITE);
+            logBytes = channel.size();
+            channel.position(logBytes);
+            System.out.println("Write queue compacted from " + before + " to " + logBytes + " bytes");
+        } catch (IOException e) {
+            System.err.println("Write queue compaction failed: " + e.getMessage());
+            try {
+                if (!channel.isOpen()) {
+                    channel = FileChannel.open(logFile.toPath(), StandardOpenOption.WRITE);
+                    channel.position(channel.size());
+                }
+            } catch (IOException reopen) {
+                System.err.println("Write queue cannot reopen its log: " + reopen.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Rebuild the jobs from the log
+     * @return the length of the intact part of the log
+     */
+    private long replay() throws IOException {
+        ByteBuffer data = ByteBuffer.allocate((int) Math.min(Integer.MAX_VALUE, channel.size()));
+        channel.position(0);
+        while (data.hasRemaining() && channel.read(data) >= 0) {
+            // read the whole log; it is kept small by compaction
+        }
+        data.flip();
+
+        CRC32 crc = new CRC32();
+        while (data.remaining() >= RECORD_HEADER) {
+            int start = data.position();
+            int length = data.getInt();
+            int checksum = data.getInt();
+            if (length < FIXED_PAYLOAD || length > FIXED_PAYLOAD + 2 * MAX_TARGET_BYTES || data.remaining() < length) {
+                return start;
+            }
+            crc.reset();
+            crc.update(data.array(), data.position(), length);
+            if ((int) crc.getValue() != checksum) {
+                return start;
+            }
+
+            long id = data.getLong();
+            int stateIndex = data.get();
+            int attempts = data.getInt();
+            long updated = data.getLong();
+            int targetLength = data.getShort();
+            if (targetLength < 0 || targetLength > length - FIXED_PAYLOAD) {
+                return start;
+            }
+            byte[] target = new byte[targetLength];
+            data.get(target);
+            int sourceLength = data.getShort();
+            if (sourceLength != length - FIXED_PAYLOAD - targetLength) {
+                return start;
+            }
+            byte[] source = new byte[sourceLength];
+            data.get(source);
+            if (stateIndex < 0 || stateIndex >= State.values().length) {
+                return start;
+            }
+            State state = State.values()[stateIndex];
+            String targetId = new String(target, StandardCharsets.UTF_8);
+            String sourceTagId = new String(source, StandardCharsets.UTF_8);
+
+            // Updated in place, so the jobs stay in the order they were queued
+            Job job = jobs.get(id);
+            if (job == null) {
+                job = new Job(id, targetId, sourceTagId, state, attempts, updated);
+                jobs.put(id, job);
+            }
+            job.sourceTagId = sourceTagId;
+            job.state = state;
+            job.attempts = attempts;
+            job.updated = updated;
+            if (state == State.VERIFIED) {
+                jobs.remove(id);
+            }
+            if (state == State.VERIFIED || state == State.FAILED) {
+                unfinishedByTarget.remove(targetId, job);
+            } else {
+                unfinishedByTarget.put(targetId, job);
+            }
+            nextId = Math.max(nextId, id + 1);
+        }
+        return data.position();
+    }
+
+    /**
+     * Commit what is buffered and stop
+     */
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            notifyAll();
+            thread = committer;
+        }
+        try {
+            thread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}